@@ -0,0 +1,136 @@
+package com.fredtargaryen.fragileglass.world;
+
+import com.fredtargaryen.fragileglass.block.BlockFragileGlass;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
+import com.fredtargaryen.fragileglass.tileentity.capability.StatelessFragility;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityTNTPrimed;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times BreakSystem's scan against an InMemoryBlockAccess with randomly placed fragile glass.
+ * breakBlocksInWay reports ns per entity and breakNearbyFragileBlocks reports ns per cell. Run with -prof gc (the
+ * default for 'gradlew jmh') for allocation rates.
+ * There is no world, so the glass is registered in FragileBlockRegistry with a strategy which queues the block to
+ * shatter without asking the world (as BreakSystem#shatter does during the break pass), and the queue is never
+ * emptied. Nothing is actually broken; these benchmarks measure finding the blocks to break and calling onCrash on
+ * them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BreakSystemBenchmark
+{
+    //Width, height and depth of the test area
+    private static final int SIZE = 64;
+    //Keep entities far enough from the edges that they don't move out of the test area
+    private static final int MARGIN = 16;
+
+    //Fraction of the blocks in the test area which are fragile glass
+    @Param({"0.0", "0.001", "0.1"})
+    public double glassDensity;
+
+    @Param({"16", "1024"})
+    public int entityCount;
+
+    //Blocks per tick
+    @Param({"0.3", "1.5", "4.0"})
+    public double speed;
+
+    @Param({"1", "3"})
+    public byte noOfBreaks;
+
+    private BreakSystem breakSystem;
+    private Entity[] entities;
+    private double[] motion;
+    private int[] cells;
+    private int nextEntity;
+    private int nextCell;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Bootstrap.register();
+        Random random = new Random(42L);
+        InMemoryBlockAccess blocks = new InMemoryBlockAccess(SIZE);
+        this.breakSystem = new BreakSystem();
+        this.breakSystem.setBlockAccess(blocks);
+        Block glass = new BlockFragileGlass();
+        BreakSystem breakSystem = this.breakSystem;
+        FragileBlockRegistry.register(glass, new StatelessFragility()
+        {
+            @Override
+            public void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+            {
+                breakSystem.queueShatter(pos, state.getBlock());
+            }
+        });
+        for(int x = 0; x < SIZE; ++x)
+        {
+            for(int y = 0; y < SIZE; ++y)
+            {
+                for(int z = 0; z < SIZE; ++z)
+                {
+                    if(random.nextDouble() < this.glassDensity)
+                    {
+                        BlockPos pos = new BlockPos(x, y, z);
+                        blocks.setBlockState(pos, glass.getDefaultState(), null);
+                        this.breakSystem.getFragileIndex().add(pos);
+                    }
+                }
+            }
+        }
+        this.entities = new Entity[this.entityCount];
+        this.motion = new double[this.entityCount * 3];
+        for(int i = 0; i < this.entityCount; ++i)
+        {
+            Entity e = new EntityTNTPrimed((World) null);
+            e.setPosition(
+                    MARGIN + random.nextDouble() * (SIZE - 2 * MARGIN),
+                    MARGIN + random.nextDouble() * (SIZE - 2 * MARGIN),
+                    MARGIN + random.nextDouble() * (SIZE - 2 * MARGIN));
+            this.entities[i] = e;
+            //Random direction, at the given speed
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian();
+            double scale = this.speed / Math.sqrt(dx * dx + dy * dy + dz * dz);
+            this.motion[i * 3] = dx * scale;
+            this.motion[i * 3 + 1] = dy * scale;
+            this.motion[i * 3 + 2] = dz * scale;
+        }
+        this.cells = new int[4096 * 3];
+        for(int i = 0; i < this.cells.length; ++i)
+        {
+            this.cells[i] = random.nextInt(SIZE);
+        }
+    }
+
+    @Benchmark
+    public void breakBlocksInWay()
+    {
+        int i = this.nextEntity;
+        this.nextEntity = i + 1 == this.entityCount ? 0 : i + 1;
+        this.breakSystem.breakBlocksInWay(this.entities[i],
+                this.motion[i * 3], this.motion[i * 3 + 1], this.motion[i * 3 + 2], this.speed, this.noOfBreaks);
+    }
+
+    @Benchmark
+    public void breakNearbyFragileBlocks()
+    {
+        int i = this.nextCell;
+        this.nextCell = i + 3 == this.cells.length ? 0 : i + 3;
+        this.breakSystem.breakNearbyFragileBlocks(this.entities[0], this.cells[i], this.cells[i + 1], this.cells[i + 2], this.speed);
+    }
+}
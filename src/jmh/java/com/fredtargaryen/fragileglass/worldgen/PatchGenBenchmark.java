@@ -0,0 +1,159 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.block.BlockThinIce;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original way of generating a patch (the trig loop in genPatchTrig, through the world) with
+ * PatchGen#genPatchDirect (the offset table, through a LiveChunkBlocks), turning a layer of ice in a SingleChunkWorld
+ * into thin ice with a PatchGenIce.
+ * The "blocks" counter is the number of blocks turned into thin ice per second; the two paths make differently
+ * shaped patches, so compare that rather than patches per second. The layer is turned back into ice before every
+ * patch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchGenBenchmark
+{
+    private static final int LAYER_Y = 64;
+    private static final BlockPos CENTRE = new BlockPos(8, LAYER_Y, 8);
+    private static final double PI_FRACTION = Math.PI / 6;
+    private static final double TWO_PI = Math.PI * 2;
+
+    //Average patch diameter, as in the config
+    @Param({"5", "14"})
+    public int avePatchSize;
+
+    private Random random;
+    private SingleChunkWorld world;
+    private ExtendedBlockStorage storage;
+    private IBlockState ice;
+    private IBlockState thinIce;
+    private PatchGen patchGen;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters
+    {
+        public long blocks;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            this.blocks = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Bootstrap.register();
+        this.random = new Random(42L);
+        this.world = new SingleChunkWorld();
+        this.storage = new ExtendedBlockStorage(LAYER_Y & ~15, true);
+        this.world.getChunk().getBlockStorageArray()[LAYER_Y >> 4] = this.storage;
+        this.ice = Blocks.ICE.getDefaultState();
+        //PatchGenIce takes its settings from the config, which isn't loaded outside a running game
+        FragileGlassBase.thinIce = new BlockThinIce();
+        FragileGlassBase.avePatchSizeIce = this.avePatchSize;
+        FragileGlassBase.genChanceIce = 1;
+        FragileGlassBase.iceBlocks = new ArrayList<>();
+        this.thinIce = FragileGlassBase.thinIce.getDefaultState();
+        this.patchGen = new PatchGenIce();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetLayer()
+    {
+        Chunk chunk = this.world.getChunk();
+        chunk.getTileEntityMap().clear();
+        this.world.loadedTileEntityList.clear();
+        this.world.tickableTileEntities.clear();
+        for(int x = 0; x < 16; ++x)
+        {
+            for(int z = 0; z < 16; ++z)
+            {
+                this.storage.set(x, LAYER_Y & 15, z, this.ice);
+            }
+        }
+        chunk.generateSkylightMap();
+    }
+
+    @Benchmark
+    public void trigLoop(Counters counters)
+    {
+        this.genPatchTrig(0, 0, CENTRE);
+        counters.blocks += this.countThinIce();
+    }
+
+    @Benchmark
+    public void offsetTable(Counters counters)
+    {
+        LiveChunkBlocks blocks = new LiveChunkBlocks(this.world, 0, 0);
+        this.patchGen.genPatchDirect(this.random, blocks, CENTRE, null);
+        blocks.finish();
+        counters.blocks += this.countThinIce();
+    }
+
+    /**
+     * The original way of generating a patch, kept here as the baseline: sample 12 points around each ring and set
+     * them through the world. Cells can be visited more than once, and there are gaps in the bigger rings.
+     */
+    private void genPatchTrig(int chunkX, int chunkZ, BlockPos patchCentre)
+    {
+        BlockPos.MutableBlockPos nextBlockPos = new BlockPos.MutableBlockPos(0, 0, 0);
+        int patchRadius = (int) (((2 * this.random.nextGaussian()) + this.patchGen.avePatchSize) / 2);
+        //Move centre of patch so that patches cannot go outside the chunk
+        int chunkBlockX = chunkX * 16;
+        int chunkBlockZ = chunkZ * 16;
+        double centreX = Math.max(patchCentre.getX(), chunkBlockX + patchRadius);
+        centreX = Math.min(centreX, chunkBlockX + 16 - patchRadius);
+        double centreY = patchCentre.getY();
+        double centreZ = Math.max(patchCentre.getZ(), chunkBlockZ + patchRadius);
+        centreZ = Math.min(centreZ, chunkBlockZ + 16 - patchRadius);
+        for (int rad = patchRadius; rad > 0; rad--)
+        {
+            for (double r = 0; r < TWO_PI; r += PI_FRACTION)
+            {
+                nextBlockPos.setPos((int) (centreX + (rad * Math.cos(r))), centreY, (int) (centreZ + (rad * Math.sin(r))));
+                if(this.patchGen.isBlockValidToTransform(this.world.getBlockState(nextBlockPos).getBlock())
+                        && (rad <= patchRadius - 2 || this.random.nextBoolean()))
+                {
+                    this.world.setBlockState(nextBlockPos, this.thinIce, 18);
+                }
+            }
+        }
+        this.world.setBlockState(new BlockPos(centreX, centreY, centreZ), this.thinIce, 18);
+    }
+
+    private int countThinIce()
+    {
+        int count = 0;
+        for(int x = 0; x < 16; ++x)
+        {
+            for(int z = 0; z < 16; ++z)
+            {
+                if(this.storage.get(x, LAYER_Y & 15, z) == this.thinIce)
+                {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+}
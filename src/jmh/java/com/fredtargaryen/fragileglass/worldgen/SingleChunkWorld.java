@@ -0,0 +1,81 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import net.minecraft.profiler.Profiler;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.EmptyChunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stands in for a World in benchmarks: chunk (0, 0) and nothing else. Every other chunk is an EmptyChunk and counts
+ * as unloaded, so lighting updates stop at the edge of the chunk like they would next to an ungenerated chunk.
+ */
+public class SingleChunkWorld extends World
+{
+    private final Chunk chunk;
+
+    public SingleChunkWorld()
+    {
+        super(null, new WorldInfo(new WorldSettings(0L, GameType.SURVIVAL, false, false, WorldType.DEFAULT), "benchmark"),
+                DimensionType.OVERWORLD.createDimension(), new Profiler(), false);
+        this.provider.setWorld(this);
+        this.chunk = new Chunk(this, 0, 0);
+        this.chunkProvider = this.createChunkProvider();
+    }
+
+    public Chunk getChunk()
+    {
+        return this.chunk;
+    }
+
+    @Override
+    protected IChunkProvider createChunkProvider()
+    {
+        return new IChunkProvider()
+        {
+            @Nullable
+            @Override
+            public Chunk getLoadedChunk(int x, int z)
+            {
+                return x == 0 && z == 0 ? SingleChunkWorld.this.chunk : null;
+            }
+
+            @Override
+            public Chunk provideChunk(int x, int z)
+            {
+                return x == 0 && z == 0 ? SingleChunkWorld.this.chunk : new EmptyChunk(SingleChunkWorld.this, x, z);
+            }
+
+            @Override
+            public boolean tick()
+            {
+                return false;
+            }
+
+            @Override
+            public String makeString()
+            {
+                return "SingleChunkWorld";
+            }
+
+            @Override
+            public boolean isChunkGeneratedAt(int x, int z)
+            {
+                return x == 0 && z == 0;
+            }
+        };
+    }
+
+    @Override
+    protected boolean isChunkLoaded(int x, int z, boolean allowEmpty)
+    {
+        return x == 0 && z == 0;
+    }
+}
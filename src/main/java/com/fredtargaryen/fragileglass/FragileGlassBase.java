@@ -1,10 +1,12 @@
 package com.fredtargaryen.fragileglass;
 
 import com.fredtargaryen.fragileglass.block.*;
+import com.fredtargaryen.fragileglass.command.CommandFragileGlass;
 import com.fredtargaryen.fragileglass.entity.capability.*;
 import com.fredtargaryen.fragileglass.item.ItemBlockStainedFragileGlass;
 import com.fredtargaryen.fragileglass.item.ItemBlockStainedFragilePane;
-import com.fredtargaryen.fragileglass.network.MessageBreakerMovement;
+import com.fredtargaryen.fragileglass.network.MessageMovementPolicy;
+import com.fredtargaryen.fragileglass.network.MovementSendPolicy;
 import com.fredtargaryen.fragileglass.network.PacketHandler;
 import com.fredtargaryen.fragileglass.proxy.CommonProxy;
 import com.fredtargaryen.fragileglass.tileentity.TileEntityFragile;
@@ -13,19 +15,17 @@ import com.fredtargaryen.fragileglass.tileentity.TileEntityThinIce;
 import com.fredtargaryen.fragileglass.tileentity.TileEntityWeakStone;
 import com.fredtargaryen.fragileglass.tileentity.capability.FragileCapFactory;
 import com.fredtargaryen.fragileglass.tileentity.capability.FragileCapStorage;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
 import com.fredtargaryen.fragileglass.tileentity.capability.IFragileCapability;
 import com.fredtargaryen.fragileglass.world.BreakSystem;
 import com.fredtargaryen.fragileglass.worldgen.PatchGen;
 import com.fredtargaryen.fragileglass.worldgen.PatchGenIce;
 import com.fredtargaryen.fragileglass.worldgen.PatchGenStone;
+import com.fredtargaryen.fragileglass.worldgen.PatchedChunks;
 import net.minecraft.block.Block;
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityLivingBase;
-import net.minecraft.entity.item.*;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.entity.projectile.EntityArrow;
-import net.minecraft.entity.projectile.EntityFireball;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemBlock;
 import net.minecraft.item.ItemStack;
@@ -39,15 +39,19 @@ import net.minecraftforge.common.config.Configuration;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
 import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLModIdMappingEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
-import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent;
 import net.minecraftforge.fml.common.registry.GameRegistry;
 import net.minecraftforge.oredict.OreDictionary;
@@ -55,6 +59,9 @@ import net.minecraftforge.oredict.OreDictionary;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Mod(modid = DataReference.MODID, version = DataReference.VERSION, name=DataReference.MODNAME)
@@ -74,11 +81,19 @@ public class FragileGlassBase
     private static boolean genWeakStone;
     public static int avePatchSizeStone;
     public static int genChanceStone;
+    public static int columnsStone;
+    public static int maxRetrofitWritesPerTick;
+    public static int maxBreaksPerTick;
+    public static int maxScannedCellsPerTick;
+    public static boolean serverSideMotion;
+    public static boolean eventDrivenMelt;
+    private static MovementSendPolicy movementSendPolicy;
 
     private static PatchGen patchGenIce;
     private static PatchGen patchGenStone;
 
-    public static BreakSystem breakSystem;
+    //One BreakSystem per loaded server world, keyed by dimension id
+    private static final HashMap<Integer, BreakSystem> breakSystems = new HashMap<>();
 
     //Declare all blocks here
     public static Block fragileGlass;
@@ -108,12 +123,28 @@ public class FragileGlassBase
     public void preInit(FMLPreInitializationEvent event)
     {
         PacketHandler.init();
+        proxy.registerEventHandlers();
 
         //Capability
         CapabilityManager.INSTANCE.register(IBreakCapability.class, new BreakCapStorage(), new BreakCapFactory());
         CapabilityManager.INSTANCE.register(IPlayerBreakCapability.class, new PlayerBreakStorage(), new PlayerBreakFactory());
         CapabilityManager.INSTANCE.register(IFragileCapability.class, new FragileCapStorage(), new FragileCapFactory());
+        breakerProvider = new ICapabilityProvider() {
+            private final IBreakCapability inst = BREAKCAP.getDefaultInstance();
+
+            @Override
+            public boolean hasCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing) {
+                return capability == BREAKCAP;
+            }
+
+            @Nullable
+            @Override
+            public <T> T getCapability(@Nonnull Capability<T> capability, @Nullable EnumFacing facing) {
+                return capability == BREAKCAP ? BREAKCAP.<T>cast(inst) : null;
+            }
+        };
         MinecraftForge.EVENT_BUS.register(this);
+        MinecraftForge.EVENT_BUS.register(PatchedChunks.class);
 
         //CONFIG SETUP
         Configuration config = new Configuration(event.getSuggestedConfigurationFile());
@@ -124,6 +155,24 @@ public class FragileGlassBase
         genWeakStone = config.getBoolean("genWeakStone", "Worldgen - Weak Stone", false, "If true, weak stone patches will generate. Expect falls into lava!");
         avePatchSizeStone = config.getInt("avePatchSizeStone", "Worldgen - Weak Stone", 5, 1, 14, "Average patch diameter");
         genChanceStone = config.getInt("genChanceStone", "Worldgen - Weak Stone", 3, 1, 5, "1 in x chance of patch appearing");
+        eventDrivenMelt = config.getBoolean("eventDrivenMelt", "Worldgen - Thin Ice", false, "If true, thin ice is only checked for melting when the light where it is changes, instead of on random ticks. Saves time in worlds with a lot of thin ice");
+        columnsStone = config.getInt("columnsStone", "Worldgen - Weak Stone", 4, 1, 16, "Columns in each chunk searched for cave ceilings. The height of the world is shared out between them, so more columns spread patches out without making more of them");
+        maxRetrofitWritesPerTick = config.getInt("maxRetrofitWritesPerTick", "Worldgen - Retrofit", 4096, 64, Integer.MAX_VALUE, "Most blocks /fragileglass retrofit sets in one world in one tick. Also limits how many chunks it copies ahead, and so how much memory it uses");
+        maxBreaksPerTick = config.getInt("maxBreaksPerTick", "Breaking", 512, 1, Integer.MAX_VALUE, "Most fragile blocks that can be shattered in one world in one tick. The rest wait for later ticks");
+        maxScannedCellsPerTick = config.getInt("maxScannedCellsPerTick", "Breaking", 65536, 1, Integer.MAX_VALUE, "Most blocks that can be checked for fragile blocks in one world in one tick. Moving entities not checked this tick are checked next tick");
+        movementSendPolicy = new MovementSendPolicy(
+                config.getInt("movementMaxSendRate", "Player movement", 10, 1, 20, "Most player movement messages a client sends per second. Servers send their own value to clients"),
+                config.getFloat("movementSpeedDeadband", "Player movement", 0.01F, 0.0F, 1.0F, "Changes in player speed (blocks per tick) smaller than this are not sent to the server"),
+                config.getFloat("movementDirectionDeadband", "Player movement", 20.0F, 0.0F, 180.0F, "Changes in player direction (degrees) smaller than this are not sent to the server"));
+        MovementSendPolicy.setLocal(movementSendPolicy);
+        serverSideMotion = config.getBoolean("serverSideMotion", "Player movement", false, "If true, servers work out player motion from how far players move each tick instead of trusting movement messages from clients. Players without the mod can then break fragile blocks too");
+        BreakerRegistry.configure(
+                config.getStringList("breakerEntities", "Breaking", new String[0], "Ids of entities which can break fragile blocks, on top of the defaults (mobs, projectiles, minecarts, boats, primed TNT and falling blocks)"),
+                config.getStringList("nonBreakerEntities", "Breaking", new String[0], "Ids of entities which can never break fragile blocks, e.g. minecraft:cow"));
+        for(CullingGroup group : CullingGroup.values())
+        {
+            group.configure(config.getStringList(group.getConfigKey(), "Rendering", new String[0], group.getConfigComment()));
+        }
         config.save();
 
         //BLOCK SETUP
@@ -195,9 +244,13 @@ public class FragileGlassBase
     @Mod.EventHandler
     public void load(FMLInitializationEvent event)
     {
+        //This mod's blocks don't have TileEntities any more, but older worlds still have these saved. They are
+        //registered so loading them doesn't log an error; Chunk#addTileEntity then drops them, because their block has
+        //no TileEntity, and they are left out of the chunk the next time it is saved
     	GameRegistry.registerTileEntity(TileEntityFragileGlass.class, "TEFG");
     	GameRegistry.registerTileEntity(TileEntityThinIce.class, "TETI");
     	GameRegistry.registerTileEntity(TileEntityWeakStone.class, "TEWS");
+        FragileBlockRegistry.registerDefaults();
 
         OreDictionary.registerOre("blockSugar", sugarBlock);
 
@@ -213,11 +266,27 @@ public class FragileGlassBase
         }
     }
 
+    @Mod.EventHandler
+    public void serverStarting(FMLServerStartingEvent event)
+    {
+        event.registerServerCommand(new CommandFragileGlass());
+    }
+
     @Mod.EventHandler
     public void postInit(FMLPostInitializationEvent event)
     {
         iceBlocks = new ArrayList<>();
         iceBlocks.addAll(OreDictionary.getOres("blockIce").stream().map(ItemStack::getItem).collect(Collectors.toList()));
+        CullingGroup.buildAll();
+    }
+
+    /**
+     * Block ids can change when joining a server, so the culling groups are indexed again.
+     */
+    @Mod.EventHandler
+    public void remap(FMLModIdMappingEvent event)
+    {
+        CullingGroup.buildAll();
     }
 
     ////////////////
@@ -233,42 +302,17 @@ public class FragileGlassBase
     @CapabilityInject(IFragileCapability.class)
     public static Capability<IFragileCapability> FRAGILECAP = null;
 
+    /**
+     * Given to every non-player entity which can break fragile blocks.
+     */
+    private static ICapabilityProvider breakerProvider;
+
     @SubscribeEvent
     public void onBreakerConstruct(AttachCapabilitiesEvent<Entity> evt) {
         final Entity e = evt.getObject();
         if (e.world != null) {
-            if (e.world.isRemote) {
-                if (e instanceof EntityPlayer) {
-                    MinecraftForge.EVENT_BUS.register(new Object() {
-                        private EntityPlayer ep = (EntityPlayer) e;
-                        private double lastSpeed;
-
-                        @SubscribeEvent(priority = EventPriority.HIGHEST)
-                        public void speedUpdate(TickEvent.ClientTickEvent event) {
-                            if (event.phase == TickEvent.Phase.START) {
-                                double speed = Math.sqrt(ep.motionX * ep.motionX + ep.motionY * ep.motionY + ep.motionZ * ep.motionZ);
-                                if (Math.abs(speed - this.lastSpeed) > 0.01) {
-                                    MessageBreakerMovement mbm = new MessageBreakerMovement();
-                                    mbm.motionx = ep.motionX;
-                                    mbm.motiony = ep.motionY;
-                                    mbm.motionz = ep.motionZ;
-                                    mbm.speed = speed;
-                                    PacketHandler.INSTANCE.sendToServer(mbm);
-                                    this.lastSpeed = speed;
-                                }
-                                if (ep.isDead) {
-                                    MinecraftForge.EVENT_BUS.unregister(this);
-                                }
-                            }
-                        }
-
-                        @SubscribeEvent
-                        public void killObject(FMLNetworkEvent.ClientDisconnectionFromServerEvent event) {
-                            MinecraftForge.EVENT_BUS.unregister(this);
-                        }
-                    });
-                }
-            } else {
+            //The local player's motion is sent by ClientMovementSender
+            if (!e.world.isRemote) {
                 if (e instanceof EntityPlayer) {
                     evt.addCapability(DataReference.PLAYER_BREAK_LOCATION,
                             new ICapabilityProvider() {
@@ -288,131 +332,135 @@ public class FragileGlassBase
                                 }
                             }
                     );
-                } else {
-                    if (e instanceof EntityLivingBase
-                            || e instanceof EntityArrow
-                            || e instanceof EntityFireball
-                            || e instanceof EntityMinecart
-                            || e instanceof EntityFireworkRocket
-                            || e instanceof EntityBoat
-                            || e instanceof EntityTNTPrimed
-                            || e instanceof EntityFallingBlock) {
-                        evt.addCapability(DataReference.BREAK_LOCATION,
-                                new ICapabilityProvider() {
-
-                                    IBreakCapability inst = BREAKCAP.getDefaultInstance();
-
-                                    @Override
-                                    public boolean hasCapability(Capability<?> capability, EnumFacing facing) {
-                                        return capability == BREAKCAP;
-                                    }
-
-                                    @Override
-                                    public <T> T getCapability(Capability<T> capability, EnumFacing facing) {
-                                        return capability == FragileGlassBase.BREAKCAP ? FragileGlassBase.BREAKCAP.<T>cast(inst) : null;
-                                    }
-                                });
-                    }
+                } else if (BreakerRegistry.isBreaker(e.getClass())) {
+                    //BreakImpl holds no state, so every breaker can share the same provider and instance
+                    evt.addCapability(DataReference.BREAK_LOCATION, breakerProvider);
                 }
             }
         }
     }
 
+    /**
+     * Tell the player's client how to send movement messages to this server.
+     */
     @SubscribeEvent
-    public void onTileConstructed(AttachCapabilitiesEvent<TileEntity> evt)
+    public void sendMovementPolicy(PlayerEvent.PlayerLoggedInEvent event)
     {
-        TileEntity te = evt.getObject();
-        if(te instanceof TileEntityFragile)
+        if(event.player instanceof EntityPlayerMP)
         {
-            //Now easy to fall through when walking. #SneakOrSink
-            if(te instanceof TileEntityThinIce) {
-                evt.addCapability(DataReference.FRAGILE_CAP_LOCATION,
-                        new ICapabilityProvider() {
-                            IFragileCapability inst = FRAGILECAP.getDefaultInstance();
-
-                            @Override
-                            public boolean hasCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing) {
-                                return capability == FRAGILECAP;
-                            }
+            //Rate 0: the client doesn't need to send anything
+            MovementSendPolicy policy = serverSideMotion ? new MovementSendPolicy(0, 0.0, 0.0) : movementSendPolicy;
+            PacketHandler.INSTANCE.sendTo(new MessageMovementPolicy(policy), (EntityPlayerMP) event.player);
+        }
+    }
 
-                            @Nullable
-                            @Override
-                            public <T> T getCapability(@Nonnull Capability<T> capability, @Nullable EnumFacing facing) {
-                                return capability == FRAGILECAP ? FRAGILECAP.<T>cast(inst) : null;
-                            }
-                        }
-                );
-            }
-            else if(te instanceof TileEntityFragileGlass)
-            {
-                evt.addCapability(DataReference.FRAGILE_CAP_LOCATION,
-                        new ICapabilityProvider() {
-                            IFragileCapability inst = new IFragileCapability() {
-                                @Override
-                                public void onCrash(IBlockState state, TileEntity te, Entity crasher, double speed) {
-                                    if(speed > DataReference.PLAYER_SPRINT_SPEED)
-                                    {
-                                        te.getWorld().destroyBlock(te.getPos(), false);
-                                    }
-                                }
-                            };
+    @SubscribeEvent
+    public void resetMovementPolicy(FMLNetworkEvent.ClientDisconnectionFromServerEvent event)
+    {
+        MovementSendPolicy.resetToLocal();
+    }
 
-                            @Override
-                            public boolean hasCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing) {
-                                return capability == FRAGILECAP;
-                            }
+    @SubscribeEvent
+    public void initPlayerBreakerCap(EntityJoinWorldEvent ejwe)
+    {
+        Entity e = ejwe.getEntity();
+        if(e.hasCapability(PLAYERBREAKCAP, null))
+        {
+            e.getCapability(PLAYERBREAKCAP, null).init(e);
+        }
+    }
 
-                            @Nullable
-                            @Override
-                            public <T> T getCapability(@Nonnull Capability<T> capability, @Nullable EnumFacing facing) {
-                                return capability == FRAGILECAP ? FRAGILECAP.<T>cast(inst) : null;
-                            }
-                        });
+    /**
+     * Index other mods' blocks which are in FragileBlockRegistry or have a TileEntity with IFragileCapability. This
+     * mod's blocks and TileEntityFragile index themselves.
+     */
+    @SubscribeEvent
+    public void onBlockPlaced(BlockEvent.PlaceEvent event)
+    {
+        World w = event.getWorld();
+        if(!w.isRemote)
+        {
+            BreakSystem breakSystem = getBreakSystem(w);
+            if(breakSystem != null)
+            {
+                TileEntity te = w.getTileEntity(event.getPos());
+                if(FragileBlockRegistry.get(event.getPlacedBlock()) != null
+                        || (te != null && !(te instanceof TileEntityFragile) && te.hasCapability(FRAGILECAP, null)))
+                {
+                    breakSystem.getFragileIndex().add(event.getPos());
+                }
             }
-            else if(te instanceof TileEntityWeakStone)
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event)
+    {
+        World w = event.getWorld();
+        if(!w.isRemote)
+        {
+            BreakSystem breakSystem = getBreakSystem(w);
+            if(breakSystem != null)
             {
-                evt.addCapability(DataReference.FRAGILE_CAP_LOCATION,
-                        new ICapabilityProvider() {
-                            IFragileCapability inst = new IFragileCapability() {
-                                @Override
-                                public void onCrash(IBlockState state, TileEntity te, Entity crasher, double speed) {
-                                    World w = te.getWorld();
-                                    w.scheduleUpdate(te.getPos(), FragileGlassBase.weakStone, FragileGlassBase.weakStone.tickRate(w));
-                                }
-                            };
-                    @Override
-                    public boolean hasCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing) {
-                        return capability == FRAGILECAP;
-                    }
-
-                    @Nullable
-                    @Override
-                    public <T> T getCapability(@Nonnull Capability<T> capability, @Nullable EnumFacing facing) {
-                        return capability == FRAGILECAP ? FRAGILECAP.<T>cast(inst) : null;
-                    }
-                });
+                breakSystem.getFragileIndex().addChunk(event.getChunk());
             }
         }
     }
 
     @SubscribeEvent
-    public void initPlayerBreakerCap(EntityJoinWorldEvent ejwe)
+    public void onChunkUnload(ChunkEvent.Unload event)
     {
-        Entity e = ejwe.getEntity();
-        if(e.hasCapability(PLAYERBREAKCAP, null))
+        World w = event.getWorld();
+        if(!w.isRemote)
         {
-            e.getCapability(PLAYERBREAKCAP, null).init(e);
+            BreakSystem breakSystem = getBreakSystem(w);
+            if(breakSystem != null)
+            {
+                breakSystem.getFragileIndex().removeChunk(event.getChunk());
+                breakSystem.getPaneConnections().removeChunk(event.getChunk());
+                breakSystem.untrackChunk(event.getChunk());
+            }
         }
     }
 
+    /**
+     * Lowest priority, so cancelled joins never get here.
+     */
     @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void trackBreaker(EntityJoinWorldEvent ejwe)
+    {
+        Entity e = ejwe.getEntity();
+        World w = ejwe.getWorld();
+        if(!w.isRemote && !(e instanceof EntityPlayer)
+                && (BreakerRegistry.isBreaker(e.getClass()) || e.hasCapability(BREAKCAP, null)))
+        {
+            BreakSystem breakSystem = getBreakSystem(w);
+            if(breakSystem != null)
+            {
+                breakSystem.track(e);
+            }
+        }
+    }
+
+    /**
+     * Highest priority, so the system exists before other mods' handlers load or populate any chunks.
+     */
+    @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void loadSystem(WorldEvent.Load event)
     {
         World w = event.getWorld();
         if(!w.isRemote)
         {
-            breakSystem = new BreakSystem();
+            int dimension = w.provider.getDimension();
+            BreakSystem oldSystem = breakSystems.get(dimension);
+            if(oldSystem != null)
+            {
+                //Shouldn't happen, but don't leave a stale system subscribed if a dimension is loaded twice
+                oldSystem.end(oldSystem.getWorld());
+            }
+            BreakSystem breakSystem = new BreakSystem();
             breakSystem.init(w);
+            breakSystems.put(dimension, breakSystem);
         }
     }
 
@@ -422,9 +470,43 @@ public class FragileGlassBase
         World w = event.getWorld();
         if(!w.isRemote)
         {
-            if(breakSystem != null) {
-                breakSystem.end(w);
+            int dimension = w.provider.getDimension();
+            BreakSystem breakSystem = breakSystems.get(dimension);
+            if(breakSystem != null && breakSystem.end(w))
+            {
+                breakSystems.remove(dimension);
             }
         }
     }
-}
\ No newline at end of file
+
+    public static Collection<BreakSystem> getBreakSystems()
+    {
+        return breakSystems.values();
+    }
+
+    /**
+     * @return The BreakSystem for the given server world, or null if the world is client-side or not loaded.
+     */
+    @Nullable
+    public static BreakSystem getBreakSystem(World w)
+    {
+        return breakSystems.get(w.provider.getDimension());
+    }
+
+    /**
+     * @return The PatchGens registered as world generators, according to the config; see PatchRetrofit.
+     */
+    public static List<PatchGen> getPatchGens()
+    {
+        List<PatchGen> patchGens = new ArrayList<>();
+        if(patchGenIce != null)
+        {
+            patchGens.add(patchGenIce);
+        }
+        if(patchGenStone != null)
+        {
+            patchGens.add(patchGenStone);
+        }
+        return patchGens;
+    }
+}
@@ -1,6 +1,6 @@
 package com.fredtargaryen.fragileglass.block;
 
-import com.fredtargaryen.fragileglass.tileentity.TileEntityFragile;
+import com.fredtargaryen.fragileglass.world.FragileIndex;
 import net.minecraft.block.SoundType;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
@@ -8,16 +8,18 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.block.Block;
-import net.minecraft.block.ITileEntityProvider;
 import net.minecraft.block.material.Material;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Random;
 
-abstract class AnyFragileBlock extends Block implements ITileEntityProvider
+/**
+ * Fragile blocks have no TileEntity; see FragileBlockRegistry. Subclasses overriding onBlockAdded or breakBlock must
+ * call super, so the block stays in the FragileIndex.
+ */
+abstract class AnyFragileBlock extends Block
 {
     AnyFragileBlock(Material m)
     {
@@ -26,7 +28,17 @@ abstract class AnyFragileBlock extends Block implements ITileEntityProvider
     }
 
     @Override
-    public abstract TileEntity createNewTileEntity(World worldIn, int meta);
+    public void onBlockAdded(World worldIn, BlockPos pos, IBlockState state)
+    {
+        FragileIndex.addInWorld(worldIn, pos);
+    }
+
+    @Override
+    public void breakBlock(World worldIn, BlockPos pos, IBlockState state)
+    {
+        FragileIndex.removeInWorld(worldIn, pos);
+        super.breakBlock(worldIn, pos, state);
+    }
 
     @Override
     public int quantityDropped(Random par1Random)
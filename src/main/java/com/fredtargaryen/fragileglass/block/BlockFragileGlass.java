@@ -1,14 +1,8 @@
 package com.fredtargaryen.fragileglass.block;
 
-import com.fredtargaryen.fragileglass.FragileGlassBase;
-import com.fredtargaryen.fragileglass.tileentity.TileEntityFragile;
-import com.fredtargaryen.fragileglass.tileentity.TileEntityFragileGlass;
-import net.minecraft.block.Block;
 import net.minecraft.block.SoundType;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
-import net.minecraft.init.Blocks;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockRenderLayer;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
@@ -40,11 +34,7 @@ public class BlockFragileGlass extends AnyFragileBlock
     @Override
     public boolean doesSideBlockRendering(IBlockState state, IBlockAccess world, BlockPos pos, EnumFacing face)
     {
-        Block near = world.getBlockState(pos.offset(face)).getBlock();
-        return near == FragileGlassBase.fragileGlass || near == FragileGlassBase.fragilePane
-                || near == FragileGlassBase.stainedFragileGlass || near == FragileGlassBase.stainedFragilePane
-                || near == Blocks.GLASS || near == Blocks.GLASS_PANE
-                || near == Blocks.STAINED_GLASS || near == Blocks.STAINED_GLASS_PANE;
+        return CullingGroup.GLASS.contains(world.getBlockState(pos.offset(face)).getBlock());
     }
 
     @Override
@@ -66,15 +56,4 @@ public class BlockFragileGlass extends AnyFragileBlock
     {
         return false;
     }
-
-    @Override
-    public TileEntity createNewTileEntity(World worldIn, int meta) {
-        try {
-            return new TileEntityFragileGlass();
-        }
-        catch(Exception e)
-        {
-            throw new RuntimeException(e);
-        }
-    }
 }
\ No newline at end of file
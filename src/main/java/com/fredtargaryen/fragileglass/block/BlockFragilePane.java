@@ -1,14 +1,13 @@
 package com.fredtargaryen.fragileglass.block;
 
 import com.fredtargaryen.fragileglass.FragileGlassBase;
-import com.fredtargaryen.fragileglass.tileentity.TileEntityFragile;
-import com.fredtargaryen.fragileglass.tileentity.TileEntityFragileGlass;
+import com.fredtargaryen.fragileglass.world.BreakSystem;
+import com.fredtargaryen.fragileglass.world.PaneConnectionCache;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.properties.PropertyBool;
 import net.minecraft.block.state.BlockStateContainer;
 import net.minecraft.block.state.IBlockState;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Mirror;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
@@ -22,6 +21,7 @@ import net.minecraft.creativetab.CreativeTabs;
 import net.minecraft.entity.Entity;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.world.ChunkCache;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 
@@ -88,9 +88,7 @@ public class BlockFragilePane extends AnyFragileBlock
     @Override
     public boolean doesSideBlockRendering(IBlockState state, IBlockAccess world, BlockPos pos, EnumFacing face)
     {
-        Block near = world.getBlockState(pos.offset(face)).getBlock();
-        return near == FragileGlassBase.fragilePane || near == FragileGlassBase.stainedFragilePane
-                || near == Blocks.GLASS_PANE || near == Blocks.STAINED_GLASS_PANE;
+        return CullingGroup.PANES.contains(world.getBlockState(pos.offset(face)).getBlock());
     }
 
     //////////////////////////
@@ -143,25 +141,25 @@ public class BlockFragilePane extends AnyFragileBlock
     @ParametersAreNonnullByDefault
     public void addCollisionBoxToList(IBlockState state, World worldIn, BlockPos pos, AxisAlignedBB entityBox, List<AxisAlignedBB> collidingBoxes, @Nullable Entity entityIn, boolean p_185477_7_)
     {
-        state = this.getActualState(state, worldIn, pos);
+        int mask = this.getConnectionMask(worldIn, pos);
         addCollisionBoxToList(pos, entityBox, collidingBoxes, AABB_BY_INDEX[0]);
 
-        if (state.getValue(NORTH))
+        if ((mask & getBoundingBoxIndex(EnumFacing.NORTH)) != 0)
         {
             addCollisionBoxToList(pos, entityBox, collidingBoxes, AABB_BY_INDEX[getBoundingBoxIndex(EnumFacing.NORTH)]);
         }
 
-        if (state.getValue(SOUTH))
+        if ((mask & getBoundingBoxIndex(EnumFacing.SOUTH)) != 0)
         {
             addCollisionBoxToList(pos, entityBox, collidingBoxes, AABB_BY_INDEX[getBoundingBoxIndex(EnumFacing.SOUTH)]);
         }
 
-        if (state.getValue(EAST))
+        if ((mask & getBoundingBoxIndex(EnumFacing.EAST)) != 0)
         {
             addCollisionBoxToList(pos, entityBox, collidingBoxes, AABB_BY_INDEX[getBoundingBoxIndex(EnumFacing.EAST)]);
         }
 
-        if (state.getValue(WEST))
+        if ((mask & getBoundingBoxIndex(EnumFacing.WEST)) != 0)
         {
             addCollisionBoxToList(pos, entityBox, collidingBoxes, AABB_BY_INDEX[getBoundingBoxIndex(EnumFacing.WEST)]);
         }
@@ -174,35 +172,88 @@ public class BlockFragilePane extends AnyFragileBlock
 
     public AxisAlignedBB getBoundingBox(IBlockState state, IBlockAccess source, BlockPos pos)
     {
-        state = this.getActualState(state, source, pos);
-        return AABB_BY_INDEX[getBoundingBoxIndex(state)];
+        return AABB_BY_INDEX[this.getConnectionMask(source, pos)];
     }
 
-    private static int getBoundingBoxIndex(IBlockState state)
+    /**
+     * @return The sides the pane at pos connects to, as an index into AABB_BY_INDEX. On the server, including in the
+     * ChunkCache a mob pathfinds through, the mask is kept in the world's PaneConnectionCache until a neighbour changes.
+     * On the client it is worked out from the neighbours every time.
+     */
+    private int getConnectionMask(IBlockAccess access, BlockPos pos)
     {
-        int i = 0;
-
-        if (state.getValue(NORTH))
+        //The world behind a ChunkCache (made public by the access transformer) sees the same blocks and past its
+        //edges, so masks can be worked out from it and cached, as long as that doesn't load the neighbours' chunks
+        if(access instanceof ChunkCache)
+        {
+            World world = ((ChunkCache) access).world;
+            if(!world.isRemote && world.isAreaLoaded(pos, 1))
+            {
+                access = world;
+            }
+        }
+        PaneConnectionCache cache = getPaneConnections(access);
+        if(cache == null)
+        {
+            return this.computeConnectionMask(access, pos);
+        }
+        int mask = cache.get(pos);
+        if(mask == PaneConnectionCache.UNKNOWN)
         {
-            i |= getBoundingBoxIndex(EnumFacing.NORTH);
+            mask = this.computeConnectionMask(access, pos);
+            cache.put(pos, (byte) mask);
         }
+        return mask;
+    }
 
-        if (state.getValue(EAST))
+    private int computeConnectionMask(IBlockAccess access, BlockPos pos)
+    {
+        int mask = 0;
+        for(EnumFacing dir : EnumFacing.HORIZONTALS)
         {
-            i |= getBoundingBoxIndex(EnumFacing.EAST);
+            if(this.canPaneConnectTo(access, pos, dir))
+            {
+                mask |= getBoundingBoxIndex(dir);
+            }
         }
+        return mask;
+    }
 
-        if (state.getValue(SOUTH))
+    @Nullable
+    private static PaneConnectionCache getPaneConnections(IBlockAccess access)
+    {
+        if(access instanceof World && !((World) access).isRemote)
         {
-            i |= getBoundingBoxIndex(EnumFacing.SOUTH);
+            BreakSystem breakSystem = FragileGlassBase.getBreakSystem((World) access);
+            return breakSystem == null ? null : breakSystem.getPaneConnections();
         }
+        return null;
+    }
 
-        if (state.getValue(WEST))
+    /**
+     * Only called on the server, and only when the neighbour was changed with block update flag 1; see World#setBlockState.
+     * Changes made with flag 2 are also picked up by PaneConnectionListener.
+     */
+    @Override
+    @Deprecated
+    public void neighborChanged(IBlockState state, World worldIn, BlockPos pos, Block blockIn, BlockPos fromPos)
+    {
+        PaneConnectionCache cache = getPaneConnections(worldIn);
+        if(cache != null)
         {
-            i |= getBoundingBoxIndex(EnumFacing.WEST);
+            cache.invalidate(pos);
         }
+    }
 
-        return i;
+    @Override
+    public void breakBlock(World worldIn, BlockPos pos, IBlockState state)
+    {
+        PaneConnectionCache cache = getPaneConnections(worldIn);
+        if(cache != null)
+        {
+            cache.invalidate(pos);
+        }
+        super.breakBlock(worldIn, pos, state);
     }
 
     /**
@@ -228,15 +279,4 @@ public class BlockFragilePane extends AnyFragileBlock
     {
         return false;
     }
-
-    @Override
-    public TileEntity createNewTileEntity(World worldIn, int meta) {
-        try {
-            return new TileEntityFragileGlass();
-        }
-        catch(Exception e)
-        {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -44,6 +44,7 @@ public class BlockStainedFragileGlass extends BlockFragileGlass
 
     @Override
     public void onBlockAdded(World worldIn, BlockPos pos, IBlockState state) {
+        super.onBlockAdded(worldIn, pos, state);
         if (!worldIn.isRemote) {
             BlockBeacon.updateColorAsync(worldIn, pos);
         }
@@ -54,6 +55,7 @@ public class BlockStainedFragileGlass extends BlockFragileGlass
         if (!worldIn.isRemote) {
             BlockBeacon.updateColorAsync(worldIn, pos);
         }
+        super.breakBlock(worldIn, pos, state);
     }
 
     /**
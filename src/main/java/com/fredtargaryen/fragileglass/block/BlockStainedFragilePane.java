@@ -66,6 +66,7 @@ public class BlockStainedFragilePane extends BlockFragilePane
     @Override
     public void onBlockAdded(World worldIn, BlockPos pos, IBlockState state)
     {
+        super.onBlockAdded(worldIn, pos, state);
         if (!worldIn.isRemote)
         {
             BlockBeacon.updateColorAsync(worldIn, pos);
@@ -79,6 +80,7 @@ public class BlockStainedFragilePane extends BlockFragilePane
         {
             BlockBeacon.updateColorAsync(worldIn, pos);
         }
+        super.breakBlock(worldIn, pos, state);
     }
 
     @Override
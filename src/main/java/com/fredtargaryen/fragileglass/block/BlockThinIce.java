@@ -1,7 +1,6 @@
 package com.fredtargaryen.fragileglass.block;
 
 import com.fredtargaryen.fragileglass.FragileGlassBase;
-import com.fredtargaryen.fragileglass.tileentity.TileEntityThinIce;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockFrostedIce;
 import net.minecraft.block.BlockIce;
@@ -10,8 +9,6 @@ import net.minecraft.block.material.Material;
 import net.minecraft.block.state.BlockFaceShape;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.creativetab.CreativeTabs;
-import net.minecraft.init.Blocks;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.BlockRenderLayer;
@@ -31,11 +28,25 @@ public class BlockThinIce extends AnyFragileBlock
         this.lightOpacity = 0;
         this.slipperiness = 0.98F;
         this.setCreativeTab(CreativeTabs.MISC);
-        this.setTickRandomly(true);
+        //See ThinIceMeltListener
+        this.setTickRandomly(!FragileGlassBase.eventDrivenMelt);
     }
 
     /**
-     * Ticks the block if it's been scheduled
+     * Thin ice placed somewhere already bright enough to melt it won't see the light change, so check it once now.
+     */
+    @Override
+    public void onBlockAdded(World worldIn, BlockPos pos, IBlockState state)
+    {
+        super.onBlockAdded(worldIn, pos, state);
+        if(FragileGlassBase.eventDrivenMelt && !worldIn.isRemote)
+        {
+            worldIn.scheduleUpdate(pos, this, this.tickRate(worldIn));
+        }
+    }
+
+    /**
+     * Ticks the block if it's been scheduled, or randomly unless eventDrivenMelt is on
      */
     @Override
     public void updateTick(World worldIn, BlockPos pos, IBlockState state, Random rand)
@@ -53,15 +64,9 @@ public class BlockThinIce extends AnyFragileBlock
         {
             return false;
         }
-        else if(face == EnumFacing.UP)
-        {
-            return world.getBlockState(pos.offset(face)).getBlock() == Blocks.ICE;
-        }
-        else
-        {
-            Block near = world.getBlockState(pos.offset(face)).getBlock();
-            return near == FragileGlassBase.thinIce || near == Blocks.ICE;
-        }
+        Block near = world.getBlockState(pos.offset(face)).getBlock();
+        //Thin ice only fills the top of its block, so it doesn't hide the bottom of thin ice above it
+        return CullingGroup.ICE.contains(near) && (face != EnumFacing.UP || near != this);
     }
 
     @SideOnly(Side.CLIENT)
@@ -70,17 +75,6 @@ public class BlockThinIce extends AnyFragileBlock
         return BlockRenderLayer.TRANSLUCENT;
     }
 
-    @Override
-    public TileEntity createNewTileEntity(World worldIn, int meta) {
-        try {
-            return new TileEntityThinIce();
-        }
-        catch(Exception e)
-        {
-            throw new RuntimeException(e);
-        }
-    }
-
     public BlockFaceShape getBlockFaceShape(IBlockAccess access, IBlockState state, BlockPos pos, EnumFacing facing)
     {
         return BlockFaceShape.UNDEFINED;
@@ -93,7 +87,7 @@ public class BlockThinIce extends AnyFragileBlock
         if(side == EnumFacing.NORTH || side == EnumFacing.SOUTH || side == EnumFacing.EAST || side == EnumFacing.WEST)
         {
             Block b = blockAccess.getBlockState(pos.offset(side)).getBlock();
-            if(b == this || b instanceof BlockIce)
+            if(b instanceof BlockIce || CullingGroup.ICE.contains(b))
             {
                 return false;
             }
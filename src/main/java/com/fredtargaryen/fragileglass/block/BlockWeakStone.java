@@ -1,46 +1,38 @@
 package com.fredtargaryen.fragileglass.block;
 
-import com.fredtargaryen.fragileglass.tileentity.TileEntityWeakStone;
+import com.fredtargaryen.fragileglass.world.FragileIndex;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockFalling;
-import net.minecraft.block.ITileEntityProvider;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.init.Items;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.NonNullList;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 
-import javax.annotation.Nullable;
-
-public class BlockWeakStone extends BlockFalling implements ITileEntityProvider {
-    @Nullable
-    @Override
-    public TileEntity createNewTileEntity(World worldIn, int meta) {
-        try
-        {
-            return new TileEntityWeakStone();
-        }
-        catch (Exception exception)
-        {
-            throw new RuntimeException(exception);
-        }
-    }
-
+public class BlockWeakStone extends BlockFalling {
     public BlockWeakStone()
     {
         super();
     }
 
     /**
-     * Called after the block is set in the Chunk data, but before the Tile Entity is set
+     * Called after the block is set in the Chunk data. Unlike other falling blocks, weak stone doesn't fall until
+     * something crashes into it; see FragileBlockRegistry#WEAK_STONE.
      */
     public void onBlockAdded(World worldIn, BlockPos pos, IBlockState state)
     {
+        FragileIndex.addInWorld(worldIn, pos);
+    }
+
+    @Override
+    public void breakBlock(World worldIn, BlockPos pos, IBlockState state)
+    {
+        FragileIndex.removeInWorld(worldIn, pos);
+        super.breakBlock(worldIn, pos, state);
     }
 
     /**
@@ -0,0 +1,118 @@
+package com.fredtargaryen.fragileglass.block;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.ResourceLocation;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Blocks which hide the faces of the fragile blocks next to them. A fragile block's face is not drawn if the block on
+ * the other side is in the fragile block's group:
+ * GLASS - fragile glass, by any glass or glass pane;
+ * PANES - fragile panes, by any glass pane;
+ * ICE - thin ice, by thin ice and ice.
+ * Each group is a bitset indexed by block id, so the check costs the same however many blocks are in it. The bitsets
+ * are built in postInit and again whenever block ids are remapped, e.g. on joining a server.
+ */
+public enum CullingGroup
+{
+    GLASS("cullingGlass", "Ids of blocks which hide the faces of fragile glass next to them, on top of glass and glass panes"),
+    PANES("cullingPanes", "Ids of blocks which hide the faces of fragile panes next to them, on top of glass panes"),
+    ICE("cullingIce", "Ids of blocks which hide the faces of thin ice next to them, on top of ice and thin ice");
+
+    private final String configKey;
+    private final String configComment;
+    //Blocks added with add, by ids read from the config, or by default; see build
+    private final HashSet<Block> members = new HashSet<>();
+    private final HashSet<ResourceLocation> configIds = new HashSet<>();
+    //Read on chunk render threads; only ever replaced, never changed
+    private volatile BitSet ids = new BitSet();
+
+    CullingGroup(String configKey, String configComment)
+    {
+        this.configKey = configKey;
+        this.configComment = configComment;
+    }
+
+    public String getConfigKey()
+    {
+        return this.configKey;
+    }
+
+    public String getConfigComment()
+    {
+        return this.configComment;
+    }
+
+    /**
+     * Read this group's config list. Call in preInit.
+     * @param ids Block ids, e.g. "minecraft:glowstone".
+     */
+    public void configure(String[] ids)
+    {
+        for(String id : ids)
+        {
+            this.configIds.add(new ResourceLocation(id.trim()));
+        }
+    }
+
+    /**
+     * Make the given block hide the faces of this group's fragile blocks next to it. Can be called at any time once the
+     * block is registered.
+     */
+    public synchronized void add(Block block)
+    {
+        this.members.add(block);
+        int id = Block.getIdFromBlock(block);
+        if(id >= 0)
+        {
+            BitSet newIds = (BitSet) this.ids.clone();
+            newIds.set(id);
+            this.ids = newIds;
+        }
+    }
+
+    public boolean contains(Block block)
+    {
+        int id = Block.getIdFromBlock(block);
+        return id >= 0 && this.ids.get(id);
+    }
+
+    /**
+     * Work out every group's bitset from the blocks registered now. Call in postInit, once all blocks are registered,
+     * and whenever block ids are remapped.
+     */
+    public static void buildAll()
+    {
+        GLASS.build(Blocks.GLASS, Blocks.STAINED_GLASS, FragileGlassBase.fragileGlass, FragileGlassBase.stainedFragileGlass,
+                Blocks.GLASS_PANE, Blocks.STAINED_GLASS_PANE, FragileGlassBase.fragilePane, FragileGlassBase.stainedFragilePane);
+        PANES.build(Blocks.GLASS_PANE, Blocks.STAINED_GLASS_PANE, FragileGlassBase.fragilePane, FragileGlassBase.stainedFragilePane);
+        ICE.build(Blocks.ICE, FragileGlassBase.thinIce);
+    }
+
+    private synchronized void build(Block... defaults)
+    {
+        Collections.addAll(this.members, defaults);
+        for(ResourceLocation id : this.configIds)
+        {
+            if(Block.REGISTRY.containsKey(id))
+            {
+                this.members.add(Block.REGISTRY.getObject(id));
+            }
+        }
+        BitSet newIds = new BitSet();
+        for(Block block : this.members)
+        {
+            int id = Block.getIdFromBlock(block);
+            if(id >= 0)
+            {
+                newIds.set(id);
+            }
+        }
+        this.ids = newIds;
+    }
+}
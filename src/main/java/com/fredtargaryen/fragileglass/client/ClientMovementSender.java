@@ -0,0 +1,100 @@
+package com.fredtargaryen.fragileglass.client;
+
+import com.fredtargaryen.fragileglass.network.MessageBreakerMovement;
+import com.fredtargaryen.fragileglass.network.MovementSendPolicy;
+import com.fredtargaryen.fragileglass.network.PacketHandler;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.entity.EntityPlayerSP;
+import net.minecraftforge.client.event.RenderGameOverlayEvent;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Sends the local player's motion to the server, as often as the active MovementSendPolicy allows. Only the local
+ * player is tracked; other players' motion is sent by their own clients.
+ * There is one sender for the whole game, registered once by ClientProxy. It forgets the last motion sent whenever the
+ * local player changes (joining a world, respawning, changing dimension), so the first message after that always goes.
+ */
+public class ClientMovementSender
+{
+    private static final ClientMovementSender INSTANCE = new ClientMovementSender();
+
+    private EntityPlayerSP player;
+    private double lastSpeed;
+    private double lastMotionX;
+    private double lastMotionY;
+    private double lastMotionZ;
+    private int ticksSinceLastSend;
+    private long messagesSent;
+
+    private ClientMovementSender() {}
+
+    /**
+     * The event bus ignores an object which is already registered, so calling this again does nothing.
+     */
+    public static void register()
+    {
+        MinecraftForge.EVENT_BUS.register(INSTANCE);
+    }
+
+    @SubscribeEvent(priority = EventPriority.HIGHEST)
+    public void speedUpdate(TickEvent.ClientTickEvent event)
+    {
+        if(event.phase == TickEvent.Phase.START)
+        {
+            EntityPlayerSP ep = Minecraft.getMinecraft().player;
+            if(ep != this.player)
+            {
+                this.player = ep;
+                this.lastSpeed = 0.0;
+                this.lastMotionX = 0.0;
+                this.lastMotionY = 0.0;
+                this.lastMotionZ = 0.0;
+                //As if the last send was long ago, so the minimum gap between sends doesn't hold up the first one
+                this.ticksSinceLastSend = Integer.MAX_VALUE;
+            }
+            if(ep == null || ep.connection == null)
+            {
+                return;
+            }
+            double speed = Math.sqrt(ep.motionX * ep.motionX + ep.motionY * ep.motionY + ep.motionZ * ep.motionZ);
+            //Cosine of the angle between this motion and the last motion sent
+            double directionCosine = 1.0;
+            if(speed > 0.0 && this.lastSpeed > 0.0)
+            {
+                directionCosine = (ep.motionX * this.lastMotionX + ep.motionY * this.lastMotionY + ep.motionZ * this.lastMotionZ) / (speed * this.lastSpeed);
+            }
+            //Saturate rather than wrap round to negative, which would hold up every send after a long wait
+            if(this.ticksSinceLastSend < Integer.MAX_VALUE)
+            {
+                ++this.ticksSinceLastSend;
+            }
+            if(MovementSendPolicy.getActive().shouldSend(speed, this.lastSpeed, directionCosine, this.ticksSinceLastSend))
+            {
+                MessageBreakerMovement mbm = new MessageBreakerMovement();
+                mbm.motionx = ep.motionX;
+                mbm.motiony = ep.motionY;
+                mbm.motionz = ep.motionZ;
+                PacketHandler.INSTANCE.sendToServer(mbm);
+                this.lastSpeed = speed;
+                this.lastMotionX = ep.motionX;
+                this.lastMotionY = ep.motionY;
+                this.lastMotionZ = ep.motionZ;
+                this.ticksSinceLastSend = 0;
+                ++this.messagesSent;
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void addDebugInfo(RenderGameOverlayEvent.Text event)
+    {
+        if(Minecraft.getMinecraft().gameSettings.showDebugInfo)
+        {
+            event.getLeft().add("");
+            event.getLeft().add("Fragile Glass: " + this.messagesSent + " movement message(s) sent");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.fredtargaryen.fragileglass.command;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.world.BreakSystem;
+import com.fredtargaryen.fragileglass.worldgen.PatchGen;
+import com.fredtargaryen.fragileglass.worldgen.PatchRetrofit;
+import com.fredtargaryen.fragileglass.worldgen.RetrofitData;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.world.WorldServer;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * /fragileglass backlog - shows how many blocks each dimension still has waiting to be shattered.
+ * /fragileglass retrofit start x1 z1 x2 z2 - adds patches to the already generated chunks between the two block
+ * positions, in the sender's dimension; see PatchRetrofit.
+ * /fragileglass retrofit resume|stop|status - carries on with, stops or reports on the sender's dimension's retrofit.
+ */
+public class CommandFragileGlass extends CommandBase
+{
+    @Override
+    public String getName()
+    {
+        return "fragileglass";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender)
+    {
+        return "commands.fragileglass.usage";
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+    {
+        if(args.length == 1 && args[0].equals("backlog"))
+        {
+            for(BreakSystem breakSystem : FragileGlassBase.getBreakSystems())
+            {
+                sender.sendMessage(new TextComponentTranslation("commands.fragileglass.backlog",
+                        breakSystem.getWorld().provider.getDimension(), breakSystem.getShatterBacklog()));
+            }
+        }
+        else if(args.length >= 2 && args[0].equals("retrofit"))
+        {
+            this.executeRetrofit(sender, args);
+        }
+        else
+        {
+            throw new WrongUsageException(this.getUsage(sender));
+        }
+    }
+
+    private void executeRetrofit(ICommandSender sender, String[] args) throws CommandException
+    {
+        WorldServer world = (WorldServer) sender.getEntityWorld();
+        int dimension = world.provider.getDimension();
+        PatchRetrofit running = PatchRetrofit.get(dimension);
+        RetrofitData data = RetrofitData.get(world);
+        switch(args[1])
+        {
+            case "start":
+            case "resume":
+                if(running != null)
+                {
+                    throw new CommandException("commands.fragileglass.retrofit.running", dimension);
+                }
+                List<PatchGen> patchGens = FragileGlassBase.getPatchGens();
+                if(patchGens.isEmpty())
+                {
+                    throw new CommandException("commands.fragileglass.retrofit.disabled");
+                }
+                if(args[1].equals("start"))
+                {
+                    if(args.length != 6)
+                    {
+                        throw new WrongUsageException(this.getUsage(sender));
+                    }
+                    int x1 = parseInt(args[2]) >> 4;
+                    int z1 = parseInt(args[3]) >> 4;
+                    int x2 = parseInt(args[4]) >> 4;
+                    int z2 = parseInt(args[5]) >> 4;
+                    data.start(Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2));
+                }
+                else if(!data.isUnfinished())
+                {
+                    throw new CommandException("commands.fragileglass.retrofit.nothing", dimension);
+                }
+                PatchRetrofit.start(world, patchGens, sender);
+                sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.started",
+                        dimension, data.getNextIndex(), data.getNoChunks()));
+                break;
+            case "stop":
+                if(running == null)
+                {
+                    throw new CommandException("commands.fragileglass.retrofit.notrunning", dimension);
+                }
+                running.stop();
+                sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.stopped",
+                        dimension, running.getChunksDone(), running.getNoChunks()));
+                break;
+            case "status":
+                if(running != null)
+                {
+                    sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.progress",
+                            dimension, running.getChunksDone(), running.getNoChunks(), running.getBlocksChanged()));
+                }
+                else if(data.isUnfinished())
+                {
+                    sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.stopped",
+                            dimension, data.getNextIndex(), data.getNoChunks()));
+                }
+                else
+                {
+                    sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.nothing", dimension));
+                }
+                break;
+            default:
+                throw new WrongUsageException(this.getUsage(sender));
+        }
+    }
+
+    @Override
+    public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos)
+    {
+        if(args.length == 1)
+        {
+            return getListOfStringsMatchingLastWord(args, "backlog", "retrofit");
+        }
+        if(args[0].equals("retrofit"))
+        {
+            if(args.length == 2)
+            {
+                return getListOfStringsMatchingLastWord(args, "start", "resume", "stop", "status");
+            }
+            if(args[1].equals("start") && args.length <= 6)
+            {
+                //x and z of the looked-at block, for each corner
+                return getTabCompletionCoordinateXZ(args, args.length <= 4 ? 2 : 4, targetPos);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
@@ -11,6 +11,39 @@ public class BreakCapFactory implements Callable<IBreakCapability> {
         return new BreakImpl();
     }
 
+    private static final double MINIMUM_ENTITY_SPEED_SQUARED = DataReference.MINIMUM_ENTITY_SPEED * DataReference.MINIMUM_ENTITY_SPEED;
+
+    /**
+     * @return true if the entity's motion is fast enough for BreakImpl to break blocks.
+     */
+    public static boolean isFastEnough(Entity e)
+    {
+        return e.motionX * e.motionX + e.motionY * e.motionY + e.motionZ * e.motionZ >= MINIMUM_ENTITY_SPEED_SQUARED;
+    }
+
+    /**
+     * Does the same as BreakImpl#sample, reading the entity's motion fields directly. BreakSystem calls this for
+     * every entity the BreakerRegistry gave a BreakImpl, so it never has to look up their capability.
+     */
+    public static void sampleDefault(Entity e, BreakerSample sample)
+    {
+        double speedSq = e.motionX * e.motionX + e.motionY * e.motionY + e.motionZ * e.motionZ;
+        //Compare squares, so entities moving too slowly to break anything (nearly all of them) never need a sqrt
+        if(speedSq >= MINIMUM_ENTITY_SPEED_SQUARED && speedSq <= DataReference.MAXIMUM_ENTITY_SPEED_SQUARED)
+        {
+            sample.ableToBreak = true;
+            sample.motionX = e.motionX;
+            sample.motionY = e.motionY;
+            sample.motionZ = e.motionZ;
+            sample.speed = Math.sqrt(speedSq);
+            sample.noOfBreaks = 1;
+        }
+        else
+        {
+            sample.ableToBreak = false;
+        }
+    }
+
     public class BreakImpl implements IBreakCapability
     {
         public void init(Entity e) {}
@@ -46,5 +79,10 @@ public class BreakCapFactory implements Callable<IBreakCapability> {
         public byte getNoOfBreaks(Entity e) {
             return 1;
         }
+
+        @Override
+        public void sample(Entity e, BreakerSample sample) {
+            sampleDefault(e, sample);
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.fredtargaryen.fragileglass.entity.capability;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.item.*;
+import net.minecraft.entity.projectile.EntityArrow;
+import net.minecraft.entity.projectile.EntityFireball;
+import net.minecraft.util.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Decides which (non-player) entities get the default IBreakCapability. An entity is a breaker if its id is in the
+ * "breakerEntities" config list, or if it extends one of the registered breaker classes and its id is not in the
+ * "nonBreakerEntities" config list.
+ * The answer only depends on the entity's class, so it is worked out once per class and cached.
+ */
+public class BreakerRegistry
+{
+    private static final ArrayList<Class<? extends Entity>> breakerClasses = new ArrayList<>();
+    private static final HashSet<ResourceLocation> includedIds = new HashSet<>();
+    private static final HashSet<ResourceLocation> excludedIds = new HashSet<>();
+
+    static
+    {
+        breakerClasses.add(EntityLivingBase.class);
+        breakerClasses.add(EntityArrow.class);
+        breakerClasses.add(EntityFireball.class);
+        breakerClasses.add(EntityMinecart.class);
+        breakerClasses.add(EntityFireworkRocket.class);
+        breakerClasses.add(EntityBoat.class);
+        breakerClasses.add(EntityTNTPrimed.class);
+        breakerClasses.add(EntityFallingBlock.class);
+    }
+
+    private static final ClassValue<Boolean> IS_BREAKER = new ClassValue<Boolean>()
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Boolean computeValue(Class<?> type)
+        {
+            ResourceLocation id = EntityList.getKey((Class<? extends Entity>) type);
+            if(id != null)
+            {
+                if(excludedIds.contains(id))
+                {
+                    return false;
+                }
+                if(includedIds.contains(id))
+                {
+                    return true;
+                }
+            }
+            for(Class<? extends Entity> breakerClass : breakerClasses)
+            {
+                if(breakerClass.isAssignableFrom(type))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Read the config lists. Must be called before any entities are constructed.
+     * @param included Ids of entities which should be able to break fragile blocks, e.g. "minecraft:item".
+     * @param excluded Ids of entities which should never be able to break fragile blocks, e.g. "minecraft:cow".
+     */
+    public static void configure(String[] included, String[] excluded)
+    {
+        for(String id : included)
+        {
+            includedIds.add(new ResourceLocation(id.trim()));
+        }
+        for(String id : excluded)
+        {
+            excludedIds.add(new ResourceLocation(id.trim()));
+        }
+    }
+
+    /**
+     * Make all entities extending the given class able to break fragile blocks, unless excluded in the config.
+     * Call this in preInit; answers are cached once an entity of a class has been constructed.
+     */
+    public static void addBreakerClass(Class<? extends Entity> breakerClass)
+    {
+        breakerClasses.add(breakerClass);
+    }
+
+    public static boolean isBreaker(Class<? extends Entity> entityClass)
+    {
+        return IS_BREAKER.get(entityClass);
+    }
+}
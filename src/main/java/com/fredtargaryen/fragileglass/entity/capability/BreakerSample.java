@@ -0,0 +1,21 @@
+package com.fredtargaryen.fragileglass.entity.capability;
+
+/**
+ * Everything BreakSystem needs to know about a breaker for the current tick, filled in by IBreakCapability#sample.
+ * BreakSystem reuses one of these for all entities, so implementations should not keep a reference to it.
+ */
+public class BreakerSample
+{
+    /**
+     * Whether the entity breaks blocks this tick. If false, none of the other fields need to be set.
+     */
+    public boolean ableToBreak;
+    public double motionX;
+    public double motionY;
+    public double motionZ;
+    /**
+     * The distance in blocks the entity will travel this tick.
+     */
+    public double speed;
+    public byte noOfBreaks;
+}
@@ -1,5 +1,6 @@
 package com.fredtargaryen.fragileglass.entity.capability;
 
+import com.fredtargaryen.fragileglass.DataReference;
 import net.minecraft.entity.Entity;
 
 /**
@@ -57,4 +58,33 @@ public interface IBreakCapability
      * used for players here to try to compromise for the latency of speed updates from the client. I give it a 9/10.
      */
     byte getNoOfBreaks(Entity e);
+
+    /**
+     * Called by BreakSystem once per tick for each breaker instead of the individual methods above. By default it calls
+     * update, then getSpeedSquared, isAbleToBreak and the getters in the same order they have always been called.
+     * Override it if your implementation can fill in the sample more cheaply.
+     * Entities moving faster than MAXIMUM_ENTITY_SPEED_SQUARED are moving faster than chunks can be loaded, so there
+     * is not much point in them breaking blocks.
+     */
+    default void sample(Entity e, BreakerSample sample)
+    {
+        this.update(e);
+        //Get the squared speed; just to avoid performing a sqrt operation more often than necessary
+        double speedSq = this.getSpeedSquared(e);
+        sample.ableToBreak = false;
+        if(speedSq <= DataReference.MAXIMUM_ENTITY_SPEED_SQUARED)
+        {
+            double speed = Math.sqrt(speedSq);
+            //Checking whether the block is currently able to break would happen in IFragileCapability#onCrash.
+            if(this.isAbleToBreak(e, speed))
+            {
+                sample.ableToBreak = true;
+                sample.motionX = this.getMotionX(e);
+                sample.motionY = this.getMotionY(e);
+                sample.motionZ = this.getMotionZ(e);
+                sample.speed = speed;
+                sample.noOfBreaks = this.getNoOfBreaks(e);
+            }
+        }
+    }
 }
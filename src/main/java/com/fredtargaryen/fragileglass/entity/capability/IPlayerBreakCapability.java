@@ -4,9 +4,14 @@ import com.fredtargaryen.fragileglass.network.MessageBreakerMovement;
 
 /**
  * Players get this Capability instead of IBreakCapability, because their motion is never updated server-side.
- * Player motion is set via a MessageBreakerMovement so this method is required.
+ * Player motion is set via a MessageBreakerMovement so this method is required, unless the serverSideMotion config
+ * option is on; then update works the motion out from how far the player moved, and messages are ignored.
  */
 public interface IPlayerBreakCapability extends IBreakCapability
 {
+    /**
+     * Called on the network thread, not the server thread, so implementations must be thread-safe. Store the motion
+     * and apply it in update, which BreakSystem calls for every player at the start of each tick.
+     */
     void onMessage(MessageBreakerMovement mbm);
 }
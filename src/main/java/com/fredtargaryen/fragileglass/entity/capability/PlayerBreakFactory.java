@@ -1,10 +1,14 @@
 package com.fredtargaryen.fragileglass.entity.capability;
 
 import com.fredtargaryen.fragileglass.DataReference;
+import com.fredtargaryen.fragileglass.FragileGlassBase;
 import com.fredtargaryen.fragileglass.network.MessageBreakerMovement;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerBreakFactory implements Callable<IPlayerBreakCapability>
 {
@@ -19,6 +23,11 @@ public class PlayerBreakFactory implements Callable<IPlayerBreakCapability>
         protected double prevPosZ;
         private double[] motionVec;
         private double lastDistance;
+        //The world time of the last update, so updating more than once in a tick changes nothing
+        private long lastUpdateTime;
+        //The latest motion from a MessageBreakerMovement, packed; see MessageBreakerMovement#packedMotion.
+        //Written by the network thread and taken by update. 0 if nothing new has arrived since the last update
+        private final AtomicLong latestMotion = new AtomicLong();
 
         public void init(Entity e) {
             this.prevPosX = e.posX;
@@ -26,10 +35,61 @@ public class PlayerBreakFactory implements Callable<IPlayerBreakCapability>
             this.prevPosZ = e.posZ;
             this.lastDistance = 0.0;
             this.motionVec = new double[] { 0.0, 0.0, 0.0 };
+            this.lastUpdateTime = Long.MIN_VALUE;
         }
 
         @Override
-        public void update(Entity e) { }
+        public void update(Entity e) {
+            if(FragileGlassBase.serverSideMotion) {
+                long time = e.world.getTotalWorldTime();
+                if(time != this.lastUpdateTime) {
+                    this.lastUpdateTime = time;
+                    this.estimateMotion(e);
+                }
+            }
+            else {
+                long packed = this.latestMotion.getAndSet(0L);
+                if(packed != 0L) {
+                    this.motionVec[0] = MessageBreakerMovement.unpackMotionX(packed);
+                    this.motionVec[1] = MessageBreakerMovement.unpackMotionY(packed);
+                    this.motionVec[2] = MessageBreakerMovement.unpackMotionZ(packed);
+                    this.lastDistance = Math.sqrt(this.motionVec[0] * this.motionVec[0] + this.motionVec[1] * this.motionVec[1] + this.motionVec[2] * this.motionVec[2]);
+                }
+            }
+        }
+
+        /**
+         * Work out the motion the client would have sent from how far the player has moved since the last update.
+         * Vanilla applies friction and gravity to motion after moving an entity, so the same is done here to keep the
+         * speed comparable with PLAYER_WALK_SPEED and PLAYER_SPRINT_SPEED. Each estimate is averaged with the last one,
+         * so one odd tick (stepping up a block, or being pulled back by the server) doesn't break anything by itself.
+         */
+        private void estimateMotion(Entity e) {
+            double dx = e.posX - this.prevPosX;
+            double dy = e.posY - this.prevPosY;
+            double dz = e.posZ - this.prevPosZ;
+            this.prevPosX = e.posX;
+            this.prevPosY = e.posY;
+            this.prevPosZ = e.posZ;
+            if(dx * dx + dy * dy + dz * dz > DataReference.MAXIMUM_ENTITY_SPEED_SQUARED) {
+                //Teleported or changed dimension; the player didn't really move through anything
+                this.motionVec[0] = 0.0;
+                this.motionVec[1] = 0.0;
+                this.motionVec[2] = 0.0;
+                this.lastDistance = 0.0;
+                return;
+            }
+            float friction = 0.91F;
+            if(e.onGround) {
+                BlockPos below = new BlockPos(e.posX, e.getEntityBoundingBox().minY - 1.0, e.posZ);
+                IBlockState state = e.world.getBlockState(below);
+                friction = state.getBlock().getSlipperiness(state, e.world, below, e) * 0.91F;
+            }
+            this.motionVec[0] = (this.motionVec[0] + dx * friction) * 0.5;
+            this.motionVec[1] = (this.motionVec[1] + (dy - 0.08) * 0.98) * 0.5;
+            this.motionVec[2] = (this.motionVec[2] + dz * friction) * 0.5;
+            this.lastDistance = Math.sqrt(this.motionVec[0] * this.motionVec[0] + this.motionVec[1] * this.motionVec[1] + this.motionVec[2] * this.motionVec[2]);
+        }
 
         @Override
         public double getSpeedSquared(Entity e) {
@@ -63,10 +123,8 @@ public class PlayerBreakFactory implements Callable<IPlayerBreakCapability>
 
         public void onMessage(MessageBreakerMovement mbm)
         {
-            this.motionVec[0] = mbm.motionx;
-            this.motionVec[1] = mbm.motiony;
-            this.motionVec[2] = mbm.motionz;
-            this.lastDistance = mbm.speed;
+            //Only the newest motion matters, so this simply replaces whatever update hasn't taken yet
+            this.latestMotion.set(mbm.packedMotion);
         }
     }
 }
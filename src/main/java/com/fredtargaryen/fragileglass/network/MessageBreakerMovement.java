@@ -3,7 +3,6 @@ package com.fredtargaryen.fragileglass.network;
 import com.fredtargaryen.fragileglass.FragileGlassBase;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.entity.player.EntityPlayerMP;
-import net.minecraft.util.IThreadListener;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -14,37 +13,95 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
  */
 public class MessageBreakerMovement implements IMessage, IMessageHandler<MessageBreakerMovement, IMessage>
 {
+    /**
+     * Sent first, so the format can change without old and new versions misreading each other.
+     * Version 1: three shorts; the motion in 1/4096ths of a block per tick.
+     */
+    private static final byte FORMAT_VERSION = 1;
+    /**
+     * Motion is sent in fixed point. This covers +-8 blocks per tick, more than MAXIMUM_ENTITY_SPEED_SQUARED allows,
+     * to within 0.00025 blocks per tick, far finer than the gap between PLAYER_WALK_SPEED and PLAYER_SPRINT_SPEED.
+     */
+    private static final double MOTION_SCALE = 4096.0;
+    private static final long PACKED_FLAG = 1L << 48;
+
     public double motionx;
     public double motiony;
     public double motionz;
+    /**
+     * Not sent; worked out from the motion when the message is read.
+     */
     public double speed;
+    /**
+     * Not sent; the motion as read, packed into one long so it can be handed to the server thread without allocating
+     * anything. The x, y and z shorts are in the low 48 bits, and bit 48 is set so a valid value is never 0.
+     */
+    public long packedMotion;
+    //False if the message came in a format this version doesn't understand
+    private boolean valid = true;
 
     @Override
     public IMessage onMessage(final MessageBreakerMovement message, MessageContext ctx)
     {
-        final EntityPlayerMP player = ctx.getServerHandler().player;
-        final IThreadListener serverWorld = player.getServerWorld();
-        serverWorld.addScheduledTask(() -> {
+        //With serverSideMotion the server doesn't trust clients' motion at all
+        if(!message.valid || FragileGlassBase.serverSideMotion)
+        {
+            return null;
+        }
+        //This runs on the network thread. The capability just keeps the latest motion, and BreakSystem applies it at the
+        //start of the next tick, so there is no need to queue a task on the server thread for every message
+        EntityPlayerMP player = ctx.getServerHandler().player;
+        if(player.hasCapability(FragileGlassBase.PLAYERBREAKCAP, null))
+        {
             player.getCapability(FragileGlassBase.PLAYERBREAKCAP, null).onMessage(message);
-        });
+        }
         return null;
     }
 
     @Override
     public void fromBytes(ByteBuf buf)
     {
-        this.motionx = buf.readDouble();
-        this.motiony = buf.readDouble();
-        this.motionz = buf.readDouble();
-        this.speed = buf.readDouble();
+        if(buf.readByte() != FORMAT_VERSION)
+        {
+            this.valid = false;
+            return;
+        }
+        short x = buf.readShort();
+        short y = buf.readShort();
+        short z = buf.readShort();
+        this.packedMotion = PACKED_FLAG | ((long) z & 0xFFFFL) << 32 | ((long) y & 0xFFFFL) << 16 | ((long) x & 0xFFFFL);
+        this.motionx = x / MOTION_SCALE;
+        this.motiony = y / MOTION_SCALE;
+        this.motionz = z / MOTION_SCALE;
+        this.speed = Math.sqrt(this.motionx * this.motionx + this.motiony * this.motiony + this.motionz * this.motionz);
     }
 
     @Override
     public void toBytes(ByteBuf buf)
     {
-        buf.writeDouble(this.motionx);
-        buf.writeDouble(this.motiony);
-        buf.writeDouble(this.motionz);
-        buf.writeDouble(this.speed);
+        buf.writeByte(FORMAT_VERSION);
+        buf.writeShort(quantise(this.motionx));
+        buf.writeShort(quantise(this.motiony));
+        buf.writeShort(quantise(this.motionz));
+    }
+
+    public static double unpackMotionX(long packedMotion)
+    {
+        return (short) packedMotion / MOTION_SCALE;
+    }
+
+    public static double unpackMotionY(long packedMotion)
+    {
+        return (short) (packedMotion >> 16) / MOTION_SCALE;
+    }
+
+    public static double unpackMotionZ(long packedMotion)
+    {
+        return (short) (packedMotion >> 32) / MOTION_SCALE;
+    }
+
+    private static int quantise(double motion)
+    {
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(motion * MOTION_SCALE)));
     }
 }
@@ -0,0 +1,47 @@
+package com.fredtargaryen.fragileglass.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Sent to each player when they log in, so clients send movement messages the way the server wants them to.
+ * See MovementSendPolicy.
+ */
+public class MessageMovementPolicy implements IMessage, IMessageHandler<MessageMovementPolicy, IMessage>
+{
+    public MovementSendPolicy policy;
+
+    public MessageMovementPolicy() {}
+
+    public MessageMovementPolicy(MovementSendPolicy policy)
+    {
+        this.policy = policy;
+    }
+
+    @Override
+    public IMessage onMessage(MessageMovementPolicy message, MessageContext ctx)
+    {
+        //The policy is immutable and the active one is volatile, so no need to wait for the client thread
+        MovementSendPolicy.setActive(message.policy);
+        return null;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf)
+    {
+        int maxSendRate = buf.readByte();
+        double speedDeadband = buf.readFloat();
+        double directionDeadband = buf.readFloat();
+        this.policy = new MovementSendPolicy(maxSendRate, speedDeadband, directionDeadband);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf)
+    {
+        buf.writeByte(this.policy.maxSendRate);
+        buf.writeFloat((float) this.policy.speedDeadband);
+        buf.writeFloat((float) this.policy.directionDeadband);
+    }
+}
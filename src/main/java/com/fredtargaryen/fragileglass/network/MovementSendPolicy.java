@@ -0,0 +1,101 @@
+package com.fredtargaryen.fragileglass.network;
+
+import com.fredtargaryen.fragileglass.DataReference;
+
+/**
+ * Decides when a client sends a MessageBreakerMovement. Each client starts with the policy from its own config, and
+ * servers send theirs with a MessageMovementPolicy when a player logs in.
+ */
+public class MovementSendPolicy
+{
+    /**
+     * The policy clients follow right now. Written on the network thread, read on the client thread.
+     */
+    private static volatile MovementSendPolicy active = new MovementSendPolicy(10, 0.01, 20.0);
+    private static MovementSendPolicy local = active;
+
+    /**
+     * Most messages per second, from 1 to 20. 0 means don't send any; the server works out player motion itself.
+     */
+    public final int maxSendRate;
+    /**
+     * Changes in speed smaller than this are not sent.
+     */
+    public final double speedDeadband;
+    /**
+     * Changes in direction smaller than this many degrees are not sent.
+     */
+    public final double directionDeadband;
+    private final int minTicksBetweenSends;
+    private final double minDirectionCosine;
+
+    public MovementSendPolicy(int maxSendRate, double speedDeadband, double directionDeadband)
+    {
+        this.maxSendRate = Math.max(0, Math.min(20, maxSendRate));
+        this.speedDeadband = speedDeadband;
+        this.directionDeadband = directionDeadband;
+        this.minTicksBetweenSends = this.maxSendRate == 0 ? Integer.MAX_VALUE : 20 / this.maxSendRate;
+        this.minDirectionCosine = Math.cos(Math.toRadians(directionDeadband));
+    }
+
+    public static MovementSendPolicy getActive()
+    {
+        return active;
+    }
+
+    /**
+     * Use a policy sent by the server.
+     */
+    public static void setActive(MovementSendPolicy policy)
+    {
+        active = policy;
+    }
+
+    /**
+     * Set the policy from this game's own config, and use it until a server sends a different one.
+     */
+    public static void setLocal(MovementSendPolicy policy)
+    {
+        local = policy;
+        active = policy;
+    }
+
+    /**
+     * Go back to the policy from this game's config, e.g. after leaving a server.
+     */
+    public static void resetToLocal()
+    {
+        active = local;
+    }
+
+    /**
+     * @param speed The player's current speed.
+     * @param lastSpeed The speed in the last message sent.
+     * @param directionCosine The cosine of the angle between the current motion and the motion in the last message
+     *                        sent. 1 if either was zero.
+     * @param ticksSinceLastSend Client ticks since the last message was sent.
+     * @return true if a message should be sent now.
+     */
+    public boolean shouldSend(double speed, double lastSpeed, double directionCosine, int ticksSinceLastSend)
+    {
+        if(this.maxSendRate == 0)
+        {
+            return false;
+        }
+        //Crossing a threshold changes what the player can break, so the server needs to know straight away
+        if(crosses(speed, lastSpeed, DataReference.PLAYER_WALK_SPEED) || crosses(speed, lastSpeed, DataReference.PLAYER_SPRINT_SPEED))
+        {
+            return true;
+        }
+        if(ticksSinceLastSend < this.minTicksBetweenSends)
+        {
+            return false;
+        }
+        return Math.abs(speed - lastSpeed) > this.speedDeadband || directionCosine < this.minDirectionCosine;
+    }
+
+    private static boolean crosses(double speed, double lastSpeed, double threshold)
+    {
+        return (speed >= threshold) != (lastSpeed >= threshold);
+    }
+}
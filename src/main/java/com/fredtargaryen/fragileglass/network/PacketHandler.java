@@ -12,5 +12,6 @@ public class PacketHandler
     public static void init()
     {
         INSTANCE.registerMessage(MessageBreakerMovement.class, MessageBreakerMovement.class, 0, Side.SERVER);
+        INSTANCE.registerMessage(MessageMovementPolicy.class, MessageMovementPolicy.class, 1, Side.CLIENT);
     }
 }
@@ -2,6 +2,7 @@ package com.fredtargaryen.fragileglass.proxy;
 
 import com.fredtargaryen.fragileglass.DataReference;
 import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.client.ClientMovementSender;
 import com.fredtargaryen.fragileglass.client.renderer.block.VanillaOnlyStateMapper;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.ItemModelMesher;
@@ -61,4 +62,10 @@ public class ClientProxy extends CommonProxy
         ModelLoader.setCustomStateMapper(FragileGlassBase.stainedFragileGlass, (new VanillaOnlyStateMapper.Builder()).withColour().withSuffix("_stained_glass").build());
         ModelLoader.setCustomStateMapper(FragileGlassBase.stainedFragilePane, (new VanillaOnlyStateMapper.Builder()).withColour().withSuffix("_stained_glass_pane").build());
     }
+
+    @Override
+    public void registerEventHandlers()
+    {
+        ClientMovementSender.register();
+    }
 }
\ No newline at end of file
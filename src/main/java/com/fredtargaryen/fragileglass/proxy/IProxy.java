@@ -5,4 +5,6 @@ public interface IProxy
     void registerModels();
 
     void doStateMappings();
+
+    void registerEventHandlers();
 }
@@ -4,4 +4,5 @@ public class ServerProxy extends CommonProxy
 {
     public void registerModels(){}
     public void doStateMappings(){}
+    public void registerEventHandlers(){}
 }
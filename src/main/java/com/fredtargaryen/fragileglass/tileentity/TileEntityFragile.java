@@ -1,15 +1,15 @@
 package com.fredtargaryen.fragileglass.tileentity;
 
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.world.BreakSystem;
 import net.minecraft.tileentity.TileEntity;
 
 /**
- * Will probably always be empty. Capabilities can't be added to blocks so a TileEntity is needed.
+ * For fragile blocks which hold state of their own. Blocks which don't should be registered in FragileBlockRegistry
+ * instead, which needs no TileEntity at all; this mod's blocks all are.
  * Developers are free to add the capability to their own TileEntities instead of using this one.
- * Frustratingly, capabilities are attached in the earliest constructor of TileEntities, before
- * any information about the TileEntity is set. However glass, weak stone and ice have distinct break
- * conditions and procedures. With no way to extract the corresponding block from the TileEntity,
- * a different TileEntity is needed for each type. Suggestions of a better way to do this are very
- * welcome.
+ * TileEntityFragileGlass, TileEntityThinIce and TileEntityWeakStone are no longer created. They are only registered so
+ * that worlds saved by older versions load quietly.
  */
 public abstract class TileEntityFragile extends TileEntity
 {
@@ -17,4 +17,34 @@ public abstract class TileEntityFragile extends TileEntity
     {
         super();
     }
+
+    /**
+     * Adds this block to the FragileIndex of its world, so that BreakSystem knows to check it.
+     */
+    @Override
+    public void onLoad()
+    {
+        if(!this.world.isRemote)
+        {
+            BreakSystem breakSystem = FragileGlassBase.getBreakSystem(this.world);
+            if(breakSystem != null)
+            {
+                breakSystem.getFragileIndex().add(this.pos);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate()
+    {
+        super.invalidate();
+        if(this.world != null && !this.world.isRemote)
+        {
+            BreakSystem breakSystem = FragileGlassBase.getBreakSystem(this.world);
+            if(breakSystem != null)
+            {
+                breakSystem.getFragileIndex().remove(this.pos);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.fredtargaryen.fragileglass.tileentity.capability;
+
+import com.fredtargaryen.fragileglass.DataReference;
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.world.BreakSystem;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+
+/**
+ * Fragile blocks which don't need a TileEntity to be fragile. BreakSystem asks this registry first, and only looks for
+ * a TileEntity with IFragileCapability if the block isn't registered here. A strategy can be registered for a whole
+ * Block, or for one IBlockState, which takes priority over its Block's.
+ * Registered blocks have no TileEntity to add them to the FragileIndex, so that is done when their chunk loads; blocks
+ * which are added to a world some other way should call FragileIndex#addInWorld from Block#onBlockAdded, and
+ * FragileIndex#removeInWorld from Block#breakBlock. All of this mod's fragile blocks are registered here.
+ */
+public class FragileBlockRegistry
+{
+    /**
+     * Shatters the block if the crasher is going faster than a sprinting player.
+     */
+    public static final StatelessFragility GLASS = new StatelessFragility()
+    {
+        @Override
+        public void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+        {
+            if(speed > DataReference.PLAYER_SPRINT_SPEED)
+            {
+                BreakSystem.shatter(world, pos);
+            }
+        }
+    };
+
+    /**
+     * Shatters the block whenever something able to break blocks crashes into it. Now easy to fall through when
+     * walking. #SneakOrSink
+     */
+    public static final StatelessFragility THIN_ICE = new StatelessFragility()
+    {
+        @Override
+        public void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+        {
+            BreakSystem.shatter(world, pos);
+        }
+    };
+
+    /**
+     * Makes the block fall a second later; see BlockWeakStone.
+     */
+    public static final StatelessFragility WEAK_STONE = new StatelessFragility()
+    {
+        @Override
+        public void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+        {
+            world.scheduleUpdate(pos, FragileGlassBase.weakStone, FragileGlassBase.weakStone.tickRate(world));
+        }
+    };
+
+    private static final IdentityHashMap<Block, IFragileCapability> byBlock = new IdentityHashMap<>();
+    private static final IdentityHashMap<IBlockState, IFragileCapability> byState = new IdentityHashMap<>();
+
+    /**
+     * Register this mod's blocks. Call in init, once the blocks exist.
+     */
+    public static void registerDefaults()
+    {
+        register(FragileGlassBase.fragileGlass, GLASS);
+        register(FragileGlassBase.fragilePane, GLASS);
+        register(FragileGlassBase.stainedFragileGlass, GLASS);
+        register(FragileGlassBase.stainedFragilePane, GLASS);
+        register(FragileGlassBase.thinIce, THIN_ICE);
+        register(FragileGlassBase.weakStone, WEAK_STONE);
+    }
+
+    /**
+     * Make every state of the block fragile. Call before any worlds load.
+     */
+    public static void register(Block block, IFragileCapability fragility)
+    {
+        byBlock.put(block, fragility);
+    }
+
+    /**
+     * Make one state of a block fragile. Call before any worlds load.
+     */
+    public static void register(IBlockState state, IFragileCapability fragility)
+    {
+        byState.put(state, fragility);
+    }
+
+    /**
+     * @return What happens when something crashes into a block in the given state, or null if that isn't registered.
+     */
+    @Nullable
+    public static IFragileCapability get(IBlockState state)
+    {
+        if(!byState.isEmpty())
+        {
+            IFragileCapability fragility = byState.get(state);
+            if(fragility != null)
+            {
+                return fragility;
+            }
+        }
+        return byBlock.get(state.getBlock());
+    }
+
+    public static boolean isEmpty()
+    {
+        return byBlock.isEmpty() && byState.isEmpty();
+    }
+}
@@ -1,5 +1,6 @@
 package com.fredtargaryen.fragileglass.tileentity.capability;
 
+import com.fredtargaryen.fragileglass.world.BreakSystem;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.tileentity.TileEntity;
@@ -8,9 +9,12 @@ import java.util.concurrent.Callable;
 
 public class FragileCapFactory implements Callable<IFragileCapability>
 {
+    //FragileImpl holds no state, so every default instance can be the same one
+    private final FragileImpl inst = new FragileImpl();
+
     @Override
     public IFragileCapability call() throws Exception {
-        return new FragileImpl();
+        return this.inst;
     }
 
     public class FragileImpl implements IFragileCapability
@@ -19,7 +23,7 @@ public class FragileCapFactory implements Callable<IFragileCapability>
         //Used for thin ice. Use a speed check if you want the block to be tougher.
         public void onCrash(IBlockState state, TileEntity te, Entity crasher, double speed)
         {
-            te.getWorld().destroyBlock(te.getPos(), false);
+            BreakSystem.shatter(te.getWorld(), te.getPos());
         }
     }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.fredtargaryen.fragileglass.tileentity.capability;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 
 public interface IFragileCapability
 {
@@ -16,4 +18,18 @@ public interface IFragileCapability
      * not necessarily intersecting the block's bounding box. Implementations will need to check for that.
      */
     void onCrash(IBlockState state, TileEntity te, Entity crasher, double speed);
+
+    /**
+     * As above, for blocks registered in FragileBlockRegistry, which don't need a TileEntity. By default the block's
+     * TileEntity is looked up and passed to the other onCrash, so existing implementations can be registered as they
+     * are; implementations which hold no state should extend StatelessFragility instead.
+     */
+    default void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+    {
+        TileEntity te = world.getTileEntity(pos);
+        if(te != null)
+        {
+            this.onCrash(state, te, crasher, speed);
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.fredtargaryen.fragileglass.tileentity.capability;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * An IFragileCapability which only needs to know where the block is, so one instance can be shared by every block of
+ * a type, whether or not the block has a TileEntity. See FragileBlockRegistry.
+ */
+public abstract class StatelessFragility implements IFragileCapability
+{
+    @Override
+    public final void onCrash(IBlockState state, TileEntity te, Entity crasher, double speed)
+    {
+        this.onCrash(state, te.getWorld(), te.getPos(), crasher, speed);
+    }
+
+    @Override
+    public abstract void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed);
+}
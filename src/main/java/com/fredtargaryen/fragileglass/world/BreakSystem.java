@@ -2,71 +2,421 @@ package com.fredtargaryen.fragileglass.world;
 
 import com.fredtargaryen.fragileglass.DataReference;
 import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.entity.capability.BreakCapFactory;
+import com.fredtargaryen.fragileglass.entity.capability.BreakerSample;
 import com.fredtargaryen.fragileglass.entity.capability.IBreakCapability;
+import com.fredtargaryen.fragileglass.entity.capability.IPlayerBreakCapability;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
+import com.fredtargaryen.fragileglass.tileentity.capability.IFragileCapability;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
+import it.unimi.dsi.fastutil.objects.Object2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Blocks;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.ForgeEventFactory;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
-import java.util.concurrent.ExecutionException;
+import java.util.LinkedHashSet;
 
 import static com.fredtargaryen.fragileglass.FragileGlassBase.BREAKCAP;
+import static com.fredtargaryen.fragileglass.FragileGlassBase.PLAYERBREAKCAP;
 
-public class BreakSystem
+/**
+ * Breaks fragile blocks in the way of fast-moving entities. There is one BreakSystem per loaded server world; see
+ * FragileGlassBase#getBreakSystem. Each system only scans the entities of its own world, and of those, only the
+ * breakers which are currently moving fast enough to break something.
+ */
+public class BreakSystem implements SweptBoxTraversal.CellVisitor
 {
+    private static final double PLAYER_WALK_SPEED_SQUARED = DataReference.PLAYER_WALK_SPEED * DataReference.PLAYER_WALK_SPEED;
+
     private World world;
+    //Where blocks are read from while scanning. Always the world, except in benchmarks
+    private IBlockAccess blockAccess;
+    private final FragileIndex fragileIndex = new FragileIndex();
+    private final PaneConnectionCache paneConnections = new PaneConnectionCache();
+    private final PaneConnectionListener paneListener = new PaneConnectionListener(this.paneConnections);
+    //Only when FragileGlassBase#eventDrivenMelt is on
+    private ThinIceMeltListener meltListener;
+
+    //The scan runs for many entities every tick, so it reuses these instead of allocating anything per cell or entity
+    private final BlockPos.MutableBlockPos scanPos = new BlockPos.MutableBlockPos();
+    private Entity scanEntity;
+    private double scanSpeed;
+    private final BreakerSample sample = new BreakerSample();
+
+    //Every non-player entity in this world which might break blocks, and whether its IBreakCapability is the shared
+    //BreakImpl, which can be sampled straight from its motion fields
+    private final Object2BooleanOpenHashMap<Entity> trackedBreakers = new Object2BooleanOpenHashMap<>();
+    //The breakers moving fast enough to break blocks, including players. Only these are scanned
+    private final LinkedHashSet<Entity> activeBreakers = new LinkedHashSet<>();
+    //Breakers scanned this tick, in case they need to go to the back of activeBreakers
+    private final ArrayList<Entity> scannedBreakers = new ArrayList<>();
+    private int cellsScanned;
+    //Cells of the current sweep which were already scanned in an earlier tick, and cells of it visited so far
+    private int cellsToSkip;
+    private int sweepCells;
+
+    //A sweep which ran out of cell budget part way through. The rest of it is scanned first thing next tick
+    private Entity pendingEntity;
+    private AxisAlignedBB pendingBox;
+    private double pendingReachX;
+    private double pendingReachY;
+    private double pendingReachZ;
+    private double pendingSpeed;
+    private int pendingCellsDone;
+
+    //Blocks waiting to be shattered, in the order they were crashed into: packed BlockPos -> the block that was there.
+    //See shatter. If more blocks are crashed into than FragileGlassBase#maxBreaksPerTick, the rest wait for later ticks
+    private final Long2ObjectLinkedOpenHashMap<Block> shatterQueue = new Long2ObjectLinkedOpenHashMap<>();
+    private boolean breaking;
+
     public void init(World world)
     {
         this.world = world;
+        this.blockAccess = world;
+        //Some chunks are loaded before this system exists, e.g. spawn chunks and chunks loaded by other mods'
+        //WorldEvent.Load handlers. They get no ChunkEvent.Load after this, so index them now
+        if(world instanceof WorldServer)
+        {
+            for(Chunk chunk : ((WorldServer) world).getChunkProvider().getLoadedChunks())
+            {
+                this.fragileIndex.addChunk(chunk);
+            }
+        }
         MinecraftForge.EVENT_BUS.register(this);
+        world.addEventListener(this.paneListener);
+        if(FragileGlassBase.eventDrivenMelt)
+        {
+            this.meltListener = new ThinIceMeltListener(world, this.fragileIndex);
+            world.addEventListener(this.meltListener);
+        }
     }
 
-    public void end(World world)
+    /**
+     * Stop this system if it belongs to the given world.
+     * @return true if this system was handling the world and has now stopped; false otherwise.
+     */
+    public boolean end(World world)
     {
         if(this.world == world) {
             MinecraftForge.EVENT_BUS.unregister(this);
+            world.removeEventListener(this.paneListener);
+            if(this.meltListener != null)
+            {
+                world.removeEventListener(this.meltListener);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Scan blocks from somewhere other than a real world. Only for benchmarks; see src/jmh.
+     */
+    void setBlockAccess(IBlockAccess blockAccess)
+    {
+        this.blockAccess = blockAccess;
+    }
+
+    public World getWorld()
+    {
+        return this.world;
+    }
+
+    public FragileIndex getFragileIndex()
+    {
+        return this.fragileIndex;
+    }
+
+    public PaneConnectionCache getPaneConnections()
+    {
+        return this.paneConnections;
+    }
+
+    /**
+     * Start keeping an eye on a new breaker in this world. Players are not tracked; their motion is checked at the start
+     * of each tick instead.
+     */
+    public void track(Entity e)
+    {
+        //Another mod may have given the entity its own IBreakCapability, which must be asked instead
+        IBreakCapability ibc = e.hasCapability(BREAKCAP, null) ? e.getCapability(BREAKCAP, null) : null;
+        this.trackedBreakers.put(e, ibc != null && ibc.getClass() == BreakCapFactory.BreakImpl.class);
+    }
+
+    /**
+     * Stop tracking every entity in the chunk, because the chunk is being unloaded.
+     */
+    public void untrackChunk(Chunk chunk)
+    {
+        for(ClassInheritanceMultiMap<Entity> entities : chunk.getEntityLists())
+        {
+            for(Entity e : entities)
+            {
+                this.trackedBreakers.remove(e);
+                this.activeBreakers.remove(e);
+                if(e == this.pendingEntity)
+                {
+                    this.pendingEntity = null;
+                }
+            }
         }
     }
 
     @SubscribeEvent(priority= EventPriority.HIGHEST)
     public void breakCheck(TickEvent.WorldTickEvent event) {
-        if (event.phase == TickEvent.Phase.START)
+        //Every BreakSystem receives every WorldTickEvent, so only scan this system's own world
+        if (event.phase == TickEvent.Phase.START && event.world == this.world)
         {
-            //foreach leads to ConcurrentModificationExceptions
-            Iterator<Entity> i = event.world.loadedEntityList.iterator();
-            while(i.hasNext())
+            //Cheap pass: find the tracked breakers which have started moving fast enough to break something
+            ObjectIterator<Object2BooleanMap.Entry<Entity>> tracked = this.trackedBreakers.object2BooleanEntrySet().fastIterator();
+            while(tracked.hasNext())
+            {
+                Object2BooleanMap.Entry<Entity> entry = tracked.next();
+                Entity e = entry.getKey();
+                if(e.isDead || e.world != this.world)
+                {
+                    tracked.remove();
+                }
+                else if(!entry.getBooleanValue() || BreakCapFactory.isFastEnough(e))
+                {
+                    //Breakers with their own IBreakCapability can't be judged from their motion fields alone
+                    this.activeBreakers.add(e);
+                }
+            }
+            this.activateMovingPlayers();
+            //Full pass over the moving breakers only, until the scanned cell budget runs out
+            this.breaking = true;
+            this.cellsScanned = 0;
+            boolean outOfBudget = !this.finishPendingSweep();
+            Iterator<Entity> i = this.activeBreakers.iterator();
+            while(!outOfBudget && i.hasNext())
             {
+                if(this.cellsScanned >= FragileGlassBase.maxScannedCellsPerTick)
+                {
+                    //The rest stay active and are checked next tick
+                    outOfBudget = true;
+                    break;
+                }
                 Entity e = i.next();
-                if(!e.isDead) {
-                    //Entities must have an instance of IBreakCapability or they will never be able to break blocks with
-                    //IFragileCapability.
-                    if (e.hasCapability(BREAKCAP, null)) {
-                        IBreakCapability ibc = e.getCapability(BREAKCAP, null);
-                        //Update the capability before determining speed. Convenience method; not used by default
-                        ibc.update(e);
-                        //Get the squared speed; just to avoid performing a sqrt operation more often than necessary
-                        double speedSq = ibc.getSpeedSquared(e);
-                        if (this.isValidMoveSpeedSquared(speedSq)) {
-                            double speed = Math.sqrt(speedSq);
-                            //Check the entity is currently able to break blocks.
-                            //Checking whether the block is currently able to break would happen in IFragileCapability#onCrash.
-                            if (ibc.isAbleToBreak(e, speed)) {
-                                this.breakBlocksInWay(e, ibc.getMotionX(e), ibc.getMotionY(e), ibc.getMotionZ(e), speed, ibc.getNoOfBreaks(e));
-                            }
-                        }
-                    }
+                if(e.isDead || e.world != this.world || !this.sampleBreaker(e) || !this.sample.ableToBreak)
+                {
+                    //Come to rest (or gone); the cheap pass or the player check will bring it back
+                    i.remove();
+                }
+                else
+                {
+                    //If the budget runs out part way through, the rest of the sweep is kept for next tick
+                    outOfBudget = !this.breakBlocksInWay(e, this.sample.motionX, this.sample.motionY, this.sample.motionZ, this.sample.speed, this.sample.noOfBreaks);
+                    this.scannedBreakers.add(e);
+                }
+            }
+            if(outOfBudget)
+            {
+                //Move the breakers scanned this tick to the back, so the ones which missed out go first next tick
+                for(Entity e : this.scannedBreakers)
+                {
+                    this.activeBreakers.remove(e);
+                    this.activeBreakers.add(e);
                 }
             }
+            this.scannedBreakers.clear();
+            this.breaking = false;
+            //Still before any entity moves this tick, so nothing collides with the blocks about to be shattered
+            this.shatterQueuedBlocks();
+        }
+    }
+
+    /**
+     * Scan the rest of the sweep which ran out of cell budget last tick, if there is one. The blocks it reaches were in
+     * the entity's way last tick, so they are broken even though the entity may have moved since.
+     * @return false if the budget ran out again.
+     */
+    private boolean finishPendingSweep()
+    {
+        Entity e = this.pendingEntity;
+        if(e == null)
+        {
+            return true;
+        }
+        this.pendingEntity = null;
+        if(e.isDead || e.world != this.world)
+        {
+            return true;
         }
+        return this.sweep(e, this.pendingBox, this.pendingReachX, this.pendingReachY, this.pendingReachZ,
+                this.pendingSpeed, this.pendingCellsDone);
+    }
+
+    /**
+     * Update the motion of every player in this world, and activate the ones moving fast enough to break something.
+     * The motion comes from the latest MessageBreakerMovement, or with serverSideMotion, from how far they moved since
+     * last tick; see PlayerBreakFactory.
+     */
+    private void activateMovingPlayers()
+    {
+        for(EntityPlayer player : this.world.playerEntities)
+        {
+            if(player.hasCapability(PLAYERBREAKCAP, null))
+            {
+                IPlayerBreakCapability ipbc = player.getCapability(PLAYERBREAKCAP, null);
+                ipbc.update(player);
+                if(ipbc.getSpeedSquared(player) >= PLAYER_WALK_SPEED_SQUARED)
+                {
+                    this.activeBreakers.add(player);
+                }
+            }
+        }
+    }
+
+    /**
+     * Destroy a fragile block without dropping anything, like World#destroyBlock. IFragileCapability implementations
+     * should use this rather than destroying the block themselves. During BreakSystem's break pass the block is queued,
+     * and all queued blocks are destroyed together once every moving entity has been checked; at any other time (or on
+     * the client) the block is destroyed straight away.
+     */
+    public static void shatter(World world, BlockPos pos)
+    {
+        BreakSystem breakSystem = world.isRemote ? null : FragileGlassBase.getBreakSystem(world);
+        if(breakSystem != null && breakSystem.breaking)
+        {
+            breakSystem.queueShatter(pos, world.getBlockState(pos).getBlock());
+        }
+        else
+        {
+            world.destroyBlock(pos, false);
+        }
+    }
+
+    /**
+     * Queue the block at pos to be shattered once the break pass is over, unless it already is.
+     */
+    void queueShatter(BlockPos pos, Block block)
+    {
+        long packedPos = pos.toLong();
+        if(!this.shatterQueue.containsKey(packedPos))
+        {
+            this.shatterQueue.put(packedPos, block);
+        }
+    }
+
+    /**
+     * Does the same as World#destroyBlock for every queued block, but neighbours are told about the change once each,
+     * after every block has been changed, and blocks which were shattered themselves are not told at all. Breaking a
+     * wall of glass used to update each block in the wall up to six times while it was being destroyed. Forge's
+     * NeighborNotifyEvent is still fired for each shattered block, and if it is cancelled that block's neighbours aren't
+     * told about it.
+     * PlayerChunkMapEntry already collects each chunk's changes over the tick, so all the blocks shattered in a chunk
+     * go to clients as one multi-block change packet whatever order they are changed in.
+     * Glass and ice let light through just like air does, so setBlockState does no lighting updates for them.
+     * At most FragileGlassBase#maxBreaksPerTick blocks are shattered per tick, oldest first. Queued blocks which have
+     * been replaced by something else in the meantime are skipped.
+     */
+    private void shatterQueuedBlocks()
+    {
+        if(this.shatterQueue.isEmpty())
+        {
+            return;
+        }
+        int batchSize = Math.min(this.shatterQueue.size(), FragileGlassBase.maxBreaksPerTick);
+        //Change all the blocks
+        LongOpenHashSet shattered = new LongOpenHashSet(batchSize);
+        BlockPos[] shatteredPositions = new BlockPos[batchSize];
+        Block[] shatteredBlocks = new Block[batchSize];
+        int noShattered = 0;
+        for(int i = 0; i < batchSize; ++i)
+        {
+            long packedPos = this.shatterQueue.firstLongKey();
+            Block queuedBlock = this.shatterQueue.removeFirst();
+            BlockPos pos = BlockPos.fromLong(packedPos);
+            IBlockState state = this.world.getBlockState(pos);
+            if(state.getBlock() == queuedBlock && state.getMaterial() != Material.AIR)
+            {
+                //Break particles and sound
+                this.world.playEvent(2001, pos, Block.getStateId(state));
+                //Flag 2: send to clients but don't notify neighbours yet
+                if(this.world.setBlockState(pos, Blocks.AIR.getDefaultState(), 2))
+                {
+                    shattered.add(packedPos);
+                    shatteredPositions[noShattered] = pos;
+                    shatteredBlocks[noShattered] = state.getBlock();
+                    ++noShattered;
+                }
+            }
+        }
+        //Notify the surviving neighbours, once each
+        LongOpenHashSet notified = new LongOpenHashSet();
+        for(int i = 0; i < noShattered; ++i)
+        {
+            BlockPos pos = shatteredPositions[i];
+            //World#notifyNeighborsOfStateChange fires this for every block destroyBlock changes; other mods may cancel it
+            if(ForgeEventFactory.onNeighborNotify(this.world, pos, this.world.getBlockState(pos), EnumSet.allOf(EnumFacing.class), true).isCanceled())
+            {
+                continue;
+            }
+            for(EnumFacing facing : EnumFacing.VALUES)
+            {
+                BlockPos neighbour = pos.offset(facing);
+                long packedNeighbour = neighbour.toLong();
+                if(!shattered.contains(packedNeighbour) && notified.add(packedNeighbour))
+                {
+                    this.world.neighborChanged(neighbour, shatteredBlocks[i], pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of blocks waiting to be shattered in later ticks because of the maxBreaksPerTick budget.
+     */
+    public int getShatterBacklog()
+    {
+        return this.shatterQueue.size();
+    }
+
+    /**
+     * Fill in this.sample for the given entity.
+     * Entities must have an instance of IBreakCapability or they will never be able to break blocks with
+     * IFragileCapability. Tracked entities whose capability is the shared BreakImpl are sampled straight from their
+     * motion fields, without looking up the capability at all; see track.
+     * @return false if the entity can't break blocks at all.
+     */
+    private boolean sampleBreaker(Entity e)
+    {
+        if(this.trackedBreakers.getBoolean(e))
+        {
+            BreakCapFactory.sampleDefault(e, this.sample);
+            return true;
+        }
+        if(e.hasCapability(BREAKCAP, null))
+        {
+            e.getCapability(BREAKCAP, null).sample(e, this.sample);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -76,9 +426,9 @@ public class BreakSystem
      * The calculations are more complicated and use the event bus, but are less frequent. I believe performance is
      * slightly improved this way - at the very least, the effect is better and modders can integrate with this mod more
      * easily.
-     * The method loops according to noOfBreaks. See IBreakCapability#getNumberOfBreaks for advice on the value of
-     * noOfBreaks. Each loop offsets the bounding box and performs another break at the given speed. If noOfBreaks is 3
-     * and the speed is 0.3, this attempts 3 breaks, over a distance of 0.9 blocks.
+     * The swept distance is multiplied by noOfBreaks. See IBreakCapability#getNumberOfBreaks for advice on the value of
+     * noOfBreaks. If noOfBreaks is 3 and the speed is 0.3, the bounding box is swept over a distance of 0.9 blocks, but
+     * onCrash is still told the speed is 0.3.
      * NOTE: Depending on implementation this may not be the same as 1 break and a speed of 0.9. For example 1 break at
      * speed 0.6 would break any fragile glass 0.6 blocks away, but 3 breaks at speed 0.2 would not break any fragile
      * glass because 0.2 is too slow.
@@ -91,10 +441,9 @@ public class BreakSystem
      *      through). Instead the bounding box of the entity has to be "stretched" along the vector
      *      so that all blocks it intersects with will break, always providing a large enough gap.
      * 3.   If the entity is moving diagonally this creates a shape which is not a cube, so cannot
-     *      be represented using AxisAlignedBB. Instead, AxisAlignedBB#offset(x, y, z) will be
-     *      used to effectively move the entity bounding box along the movement vector, checking for
-     *      intersections with block bounding boxes along the way. Upon any such intersections, onCrash is called.
-     *      The implementation of this "algorithm" is explained further in inline comments below.
+     *      be represented using AxisAlignedBB. Instead SweptBoxTraversal walks through exactly the
+     *      cells that the moving bounding box passes through, once each, and onCrash is called for
+     *      any fragile block in those cells.
      * P.   This problem is most clear when a player falls onto a fragile glass ceiling. Rather than
      *      smoothly crashing through the ceiling and being damaged when they hit the floor, the
      *      player instead hits the glass ceiling (cancelling their downward movement), gets damaged,
@@ -108,75 +457,117 @@ public class BreakSystem
      * @param distance The distance in blocks that Entity e will travel in this current tick.
      * @param noOfBreaks Effectively multiplies the range of blocks to call onCrash on, but does not multiply the
      *                   speed of e when onCrash is called.
+     * @return false if the tick's cell budget ran out part way through; the rest is scanned next tick.
      */
-    private void breakBlocksInWay(Entity e, double xToUse, double yToUse, double zToUse, double distance, byte noOfBreaks)
-    {
-        AxisAlignedBB originalAABB = e.getEntityBoundingBox();
-        AxisAlignedBB aabb;
-        for(byte breaks = 0; breaks < noOfBreaks; ++breaks) {
-            aabb = originalAABB;
-            double xComp = xToUse / distance;
-            double yComp = yToUse / distance;
-            double zComp = zToUse / distance;
-            while (distance > 1.0) {
-                //The end of the movement vector is more than one block away from the current
-                //entity bounding box, so at the end of the tick it will have passed through
-                //at least one whole block. Offset the entity bounding box by a distance of
-                //1m (the length of a block), and check that it intersects with any fragile
-                //block bounding boxes.
-                aabb = aabb.offset(xComp, yComp, zComp);
-                distance -= 1.0;
-                this.breakNearbyFragileBlocks(e, aabb, distance);
-            }
-            //The end of the movement vector is now less than one block away from the current
-            //entity bounding box. Offset the entity bounding box right to the end of the
-            //movement vector, and check that it intersects with the block bounding box.
-            originalAABB = originalAABB.offset(xToUse, yToUse, zToUse);
-            this.breakNearbyFragileBlocks(e, originalAABB, distance);
+    boolean breakBlocksInWay(Entity e, double xToUse, double yToUse, double zToUse, double distance, byte noOfBreaks)
+    {
+        if(noOfBreaks <= 0)
+        {
+            return true;
+        }
+        AxisAlignedBB aabb = e.getEntityBoundingBox();
+        double reachX = xToUse * noOfBreaks;
+        double reachY = yToUse * noOfBreaks;
+        double reachZ = zToUse * noOfBreaks;
+        //Broad phase: if no chunk section the entity could reach this tick has a fragile block in it, stop here
+        if(!this.fragileIndex.anyInBox(
+                MathHelper.floor(Math.min(aabb.minX, aabb.minX + reachX)),
+                MathHelper.floor(Math.min(aabb.minY, aabb.minY + reachY)),
+                MathHelper.floor(Math.min(aabb.minZ, aabb.minZ + reachZ)),
+                MathHelper.floor(Math.max(aabb.maxX, aabb.maxX + reachX)),
+                MathHelper.floor(Math.max(aabb.maxY, aabb.maxY + reachY)),
+                MathHelper.floor(Math.max(aabb.maxZ, aabb.maxZ + reachZ))))
+        {
+            return true;
         }
+        return this.sweep(e, aabb, reachX, reachY, reachZ, distance, 0);
     }
 
     /**
-     * @param e The entity doing the breaking
-     * @param aabb The bounding box to break blocks around
-     * @param speed The speed e is travelling at
+     * Scan the cells the box passes through, skipping the first cellsDone of them. If the cell budget runs out, the
+     * sweep is remembered, with how many of its cells have been scanned, so finishPendingSweep can carry on from there.
+     * The entity's bounding box is kept rather than copied; entities replace theirs instead of changing it.
+     * @return false if the budget ran out.
      */
-    private void breakNearbyFragileBlocks(Entity e, AxisAlignedBB aabb, double speed)
+    private boolean sweep(Entity e, AxisAlignedBB aabb, double reachX, double reachY, double reachZ, double speed, int cellsDone)
     {
-        BlockPos blockPos;
-        Block block;
-        for (double x = Math.floor(aabb.minX); x < Math.ceil(aabb.maxX); ++x)
+        this.scanEntity = e;
+        this.scanSpeed = speed;
+        this.cellsToSkip = cellsDone;
+        this.sweepCells = 0;
+        boolean finished = SweptBoxTraversal.traverse(aabb.minX, aabb.minY, aabb.minZ, aabb.maxX, aabb.maxY, aabb.maxZ,
+                reachX, reachY, reachZ, this);
+        this.scanEntity = null;
+        if(!finished)
         {
-            for (double y = Math.floor(aabb.minY); y < Math.ceil(aabb.maxY); ++y)
+            this.pendingEntity = e;
+            this.pendingBox = aabb;
+            this.pendingReachX = reachX;
+            this.pendingReachY = reachY;
+            this.pendingReachZ = reachZ;
+            this.pendingSpeed = speed;
+            this.pendingCellsDone = this.sweepCells;
+        }
+        return finished;
+    }
+
+    @Override
+    public boolean visitCell(int x, int y, int z, double entryTime)
+    {
+        if(this.cellsToSkip > 0)
+        {
+            --this.cellsToSkip;
+        }
+        else
+        {
+            //The budget only applies to the tick's break pass, not to benchmarks calling breakBlocksInWay directly
+            if(this.breaking && this.cellsScanned >= FragileGlassBase.maxScannedCellsPerTick)
             {
-                for (double z = Math.floor(aabb.minZ); z < Math.ceil(aabb.maxZ); ++z)
-                {
-                    blockPos = new BlockPos(x, y, z);
-                    IBlockState state = e.world.getBlockState(blockPos);
-                    block = state.getBlock();
-                    //Chances are the block will be an air block (pass through no question) so best check this first
-                    if (block != Blocks.AIR)
-                    {
-                        if (block.hasTileEntity(state)) {
-                            TileEntity te = e.world.getTileEntity(blockPos);
-                            try{
-                                if (te.hasCapability(FragileGlassBase.FRAGILECAP, null)) {
-                                    te.getCapability(FragileGlassBase.FRAGILECAP, null).onCrash(state, te, e, speed);
-                                }
-                            }catch (Exception CodeCrime){}
-                        }
-                    }
-                }
+                return false;
             }
+            ++this.cellsScanned;
+            this.breakNearbyFragileBlocks(this.scanEntity, x, y, z, this.scanSpeed);
         }
+        ++this.sweepCells;
+        return true;
     }
 
     /**
-     * Moving faster than MAXIMUM_ENTITY_SPEED_SQUARED means moving faster than chunks can be loaded.
-     * If this is happening there is not much point trying to break blocks.
+     * Calls onCrash on the fragile block in one cell, if there is one.
+     * @param e The entity doing the breaking
+     * @param x The x coordinate of the cell
+     * @param y The y coordinate of the cell
+     * @param z The z coordinate of the cell
+     * @param speed The speed e is travelling at
      */
-    private boolean isValidMoveSpeedSquared(double blocksPerTick)
+    void breakNearbyFragileBlocks(Entity e, int x, int y, int z, double speed)
     {
-        return blocksPerTick <= DataReference.MAXIMUM_ENTITY_SPEED_SQUARED;
+        //Most cells have no fragile block, and the index can say so without a chunk lookup
+        if (!this.fragileIndex.contains(x, y, z))
+        {
+            return;
+        }
+        //Safe to pass a mutable position around here: World#setTileEntity and TileEntity#setPos both copy it
+        BlockPos blockPos = this.scanPos.setPos(x, y, z);
+        IBlockState state = this.blockAccess.getBlockState(blockPos);
+        Block block = state.getBlock();
+        //Chances are the block will be an air block (pass through no question) so best check this first
+        if (block != Blocks.AIR)
+        {
+            //Blocks without a TileEntity of their own, including all of this mod's. Implementations may keep the
+            //position, so they get their own copy; this only happens when something is actually crashed into
+            IFragileCapability fragility = FragileBlockRegistry.get(state);
+            if (fragility != null) {
+                fragility.onCrash(state, this.world, blockPos.toImmutable(), e, speed);
+            }
+            else if (block.hasTileEntity(state)) {
+                TileEntity te = this.blockAccess.getTileEntity(blockPos);
+                try{
+                    if (te.hasCapability(FragileGlassBase.FRAGILECAP, null)) {
+                        te.getCapability(FragileGlassBase.FRAGILECAP, null).onCrash(state, te, e, speed);
+                    }
+                }catch (Exception CodeCrime){}
+            }
+        }
     }
 }
@@ -0,0 +1,208 @@
+package com.fredtargaryen.fragileglass.world;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.BitSet;
+
+/**
+ * Remembers where the fragile blocks in one world are, so BreakSystem doesn't have to look at every block an entity
+ * moves through. Each 16x16x16 chunk section containing at least one fragile block has a 4096-bit set, one bit per
+ * block; sections with no fragile blocks have no entry at all.
+ * Blocks in FragileBlockRegistry add and remove themselves through addInWorld and removeInWorld, as does
+ * TileEntityFragile, and whole chunks are indexed when they load. Mods which attach IFragileCapability to their own
+ * TileEntities are picked up on chunk load and when the block is placed by a player; if they are placed any other way,
+ * call add yourself.
+ */
+public class FragileIndex
+{
+    private final Long2ObjectOpenHashMap<BitSet> sections = new Long2ObjectOpenHashMap<>();
+
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ)
+    {
+        return ((long) sectionX & 0xFFFFFFFL) << 36 | ((long) sectionZ & 0xFFFFFFFL) << 8 | (sectionY & 0xFF);
+    }
+
+    private static int cellIndex(int x, int y, int z)
+    {
+        return (x & 15) << 8 | (y & 15) << 4 | (z & 15);
+    }
+
+    public void add(BlockPos pos)
+    {
+        int y = pos.getY();
+        if(y >= 0 && y < 256)
+        {
+            long key = sectionKey(pos.getX() >> 4, y >> 4, pos.getZ() >> 4);
+            BitSet section = this.sections.get(key);
+            if(section == null)
+            {
+                section = new BitSet(4096);
+                this.sections.put(key, section);
+            }
+            section.set(cellIndex(pos.getX(), y, pos.getZ()));
+        }
+    }
+
+    public void remove(BlockPos pos)
+    {
+        int y = pos.getY();
+        if(y >= 0 && y < 256)
+        {
+            long key = sectionKey(pos.getX() >> 4, y >> 4, pos.getZ() >> 4);
+            BitSet section = this.sections.get(key);
+            if(section != null)
+            {
+                section.clear(cellIndex(pos.getX(), y, pos.getZ()));
+                if(section.isEmpty())
+                {
+                    this.sections.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a block to the index of its world, if it is a server world.
+     */
+    public static void addInWorld(World world, BlockPos pos)
+    {
+        BreakSystem breakSystem = world.isRemote ? null : FragileGlassBase.getBreakSystem(world);
+        if(breakSystem != null)
+        {
+            breakSystem.getFragileIndex().add(pos);
+        }
+    }
+
+    /**
+     * Remove a block from the index of its world, if it is a server world.
+     */
+    public static void removeInWorld(World world, BlockPos pos)
+    {
+        BreakSystem breakSystem = world.isRemote ? null : FragileGlassBase.getBreakSystem(world);
+        if(breakSystem != null)
+        {
+            breakSystem.getFragileIndex().remove(pos);
+        }
+    }
+
+    /**
+     * Index every block in the chunk which is in FragileBlockRegistry, and every TileEntity which has
+     * IFragileCapability.
+     */
+    public void addChunk(Chunk chunk)
+    {
+        if(!FragileBlockRegistry.isEmpty())
+        {
+            ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+            for(int sectionY = 0; sectionY < storage.length; ++sectionY)
+            {
+                ExtendedBlockStorage section = storage[sectionY];
+                if(section != Chunk.NULL_BLOCK_STORAGE && !section.isEmpty())
+                {
+                    this.addSection(chunk.x, sectionY, chunk.z, section);
+                }
+            }
+        }
+        for(TileEntity te : chunk.getTileEntityMap().values())
+        {
+            if(te.hasCapability(FragileGlassBase.FRAGILECAP, null))
+            {
+                this.add(te.getPos());
+            }
+        }
+    }
+
+    private void addSection(int sectionX, int sectionY, int sectionZ, ExtendedBlockStorage section)
+    {
+        BitSet cells = null;
+        //Sections are mostly long runs of the same state, so only look each state up when it changes
+        IBlockState lastState = null;
+        boolean lastFragile = false;
+        for(int x = 0; x < 16; ++x)
+        {
+            for(int y = 0; y < 16; ++y)
+            {
+                for(int z = 0; z < 16; ++z)
+                {
+                    IBlockState state = section.get(x, y, z);
+                    if(state != lastState)
+                    {
+                        lastState = state;
+                        lastFragile = FragileBlockRegistry.get(state) != null;
+                    }
+                    if(lastFragile)
+                    {
+                        if(cells == null)
+                        {
+                            long key = sectionKey(sectionX, sectionY, sectionZ);
+                            cells = this.sections.get(key);
+                            if(cells == null)
+                            {
+                                cells = new BitSet(4096);
+                                this.sections.put(key, cells);
+                            }
+                        }
+                        cells.set(cellIndex(x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    public void removeChunk(Chunk chunk)
+    {
+        for(int sectionY = 0; sectionY < 16; ++sectionY)
+        {
+            this.sections.remove(sectionKey(chunk.x, sectionY, chunk.z));
+        }
+    }
+
+    /**
+     * @return true if there might be a fragile block at the given block coordinates.
+     */
+    public boolean contains(int x, int y, int z)
+    {
+        if(y < 0 || y > 255)
+        {
+            return false;
+        }
+        BitSet section = this.sections.get(sectionKey(x >> 4, y >> 4, z >> 4));
+        return section != null && section.get(cellIndex(x, y, z));
+    }
+
+    /**
+     * Broad phase check. All coordinates are inclusive block coordinates.
+     * @return true if any chunk section touching the box contains a fragile block.
+     */
+    public boolean anyInBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        if(this.sections.isEmpty())
+        {
+            return false;
+        }
+        int minSectionY = Math.max(minY, 0) >> 4;
+        int maxSectionY = Math.min(maxY, 255) >> 4;
+        for(int sectionX = minX >> 4; sectionX <= maxX >> 4; ++sectionX)
+        {
+            for(int sectionZ = minZ >> 4; sectionZ <= maxZ >> 4; ++sectionZ)
+            {
+                for(int sectionY = minSectionY; sectionY <= maxSectionY; ++sectionY)
+                {
+                    if(this.sections.containsKey(sectionKey(sectionX, sectionY, sectionZ)))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.fredtargaryen.fragileglass.world;
+
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * Remembers which sides each fragile pane in one world connects to, so collision and bounding box queries don't have to
+ * look at all four neighbours every time. Each chunk with at least one known pane has a map from the pane's position
+ * in the chunk to its connection mask: bit EnumFacing#getHorizontalIndex is set if the pane connects on that side,
+ * which makes the mask an index into BlockFragilePane's bounding boxes.
+ * BlockFragilePane works masks out when they are first needed and forgets them when a neighbour changes or the pane is
+ * broken, and PaneConnectionListener forgets them when any block next to them is set; whole chunks are forgotten when
+ * they unload.
+ */
+public class PaneConnectionCache
+{
+    public static final byte UNKNOWN = -1;
+
+    private final Long2ObjectOpenHashMap<Int2ByteOpenHashMap> chunks = new Long2ObjectOpenHashMap<>();
+    //Only used on the server thread, by invalidateAround
+    private final BlockPos.MutableBlockPos neighbour = new BlockPos.MutableBlockPos();
+
+    private static int cellIndex(int x, int y, int z)
+    {
+        return y << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * @return The connection mask of the pane at pos, or UNKNOWN if it hasn't been worked out since it last changed.
+     */
+    public byte get(BlockPos pos)
+    {
+        Int2ByteOpenHashMap chunk = this.chunks.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+        return chunk == null ? UNKNOWN : chunk.get(cellIndex(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public void put(BlockPos pos, byte mask)
+    {
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        Int2ByteOpenHashMap chunk = this.chunks.get(key);
+        if(chunk == null)
+        {
+            chunk = new Int2ByteOpenHashMap();
+            chunk.defaultReturnValue(UNKNOWN);
+            this.chunks.put(key, chunk);
+        }
+        chunk.put(cellIndex(pos.getX(), pos.getY(), pos.getZ()), mask);
+    }
+
+    public void invalidate(BlockPos pos)
+    {
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        Int2ByteOpenHashMap chunk = this.chunks.get(key);
+        if(chunk != null)
+        {
+            chunk.remove(cellIndex(pos.getX(), pos.getY(), pos.getZ()));
+            if(chunk.isEmpty())
+            {
+                this.chunks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Forget the masks of the block at pos and of the blocks on each horizontal side of it.
+     */
+    public void invalidateAround(BlockPos pos)
+    {
+        //Most block changes are nowhere near a pane
+        if(!this.chunks.isEmpty())
+        {
+            this.invalidate(pos);
+            for(EnumFacing facing : EnumFacing.HORIZONTALS)
+            {
+                this.invalidate(this.neighbour.setPos(pos).move(facing));
+            }
+        }
+    }
+
+    public void removeChunk(Chunk chunk)
+    {
+        this.chunks.remove(ChunkPos.asLong(chunk.x, chunk.z));
+    }
+}
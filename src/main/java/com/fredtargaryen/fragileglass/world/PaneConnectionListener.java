@@ -0,0 +1,30 @@
+package com.fredtargaryen.fragileglass.world;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Forgets the cached connection masks of the panes next to a block whenever the world tells its listeners the block
+ * changed, i.e. whenever it is set with block update flag 2. BlockFragilePane#neighborChanged only hears about changes
+ * made with flag 1, so without this, blocks set by world generation, other mods or /fill with flag 2 alone would leave
+ * panes with stale collision boxes.
+ */
+public class PaneConnectionListener extends WorldEventAdapter
+{
+    private final PaneConnectionCache paneConnections;
+
+    public PaneConnectionListener(PaneConnectionCache paneConnections)
+    {
+        this.paneConnections = paneConnections;
+    }
+
+    @Override
+    public void notifyBlockUpdate(World worldIn, BlockPos pos, IBlockState oldState, IBlockState newState, int flags)
+    {
+        if(oldState != newState)
+        {
+            this.paneConnections.invalidateAround(pos);
+        }
+    }
+}
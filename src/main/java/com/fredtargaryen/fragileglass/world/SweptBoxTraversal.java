@@ -0,0 +1,104 @@
+package com.fredtargaryen.fragileglass.world;
+
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Finds every block-sized cell that an axis-aligned box passes through as it moves along a straight line, visiting
+ * each cell exactly once. This is the Amanatides-Woo voxel traversal extended from a ray to a box: the sweep is cut
+ * into slabs one cell thick along x; within each slab only the y range the box can occupy while inside that slab is
+ * stepped through, and within each row only the reachable z range. A cell is visited if the box overlaps it (touching
+ * faces don't count) at any time t in [0, 1], where t = 0 is the start position and t = 1 is the end of the movement.
+ */
+public final class SweptBoxTraversal
+{
+    public interface CellVisitor
+    {
+        /**
+         * @param entryTime The earliest t in [0, 1] at which the box overlaps the cell. 0 if it overlaps at the start.
+         * @return false to stop the traversal here.
+         */
+        boolean visitCell(int x, int y, int z, double entryTime);
+    }
+
+    private SweptBoxTraversal() {}
+
+    /**
+     * @param minX etc. The bounds of the box at the start of the movement.
+     * @param dx etc. The total movement of the box.
+     * @param visitor Called once for each cell the moving box passes through, until it returns false. Cells are always
+     *                visited in the same order for the same arguments.
+     * @return false if the visitor stopped the traversal.
+     */
+    public static boolean traverse(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                double dx, double dy, double dz, CellVisitor visitor)
+    {
+        int firstX = MathHelper.floor(Math.min(minX, minX + dx));
+        int lastX = MathHelper.ceil(Math.max(maxX, maxX + dx)) - 1;
+        for(int x = firstX; x <= lastX; ++x)
+        {
+            double xEnter = Math.max(0.0, enterTime(x, minX, maxX, dx));
+            double xExit = Math.min(1.0, exitTime(x, minX, maxX, dx));
+            if(xEnter >= xExit)
+            {
+                continue;
+            }
+            //The y range the box covers while it is inside this slab
+            int firstY = MathHelper.floor(minY + dy * (dy >= 0.0 ? xEnter : xExit));
+            int lastY = MathHelper.ceil(maxY + dy * (dy >= 0.0 ? xExit : xEnter)) - 1;
+            for(int y = firstY; y <= lastY; ++y)
+            {
+                double yEnter = Math.max(xEnter, enterTime(y, minY, maxY, dy));
+                double yExit = Math.min(xExit, exitTime(y, minY, maxY, dy));
+                if(yEnter >= yExit)
+                {
+                    continue;
+                }
+                //The z range the box covers while it is inside this row
+                int firstZ = MathHelper.floor(minZ + dz * (dz >= 0.0 ? yEnter : yExit));
+                int lastZ = MathHelper.ceil(maxZ + dz * (dz >= 0.0 ? yExit : yEnter)) - 1;
+                for(int z = firstZ; z <= lastZ; ++z)
+                {
+                    double zEnter = Math.max(yEnter, enterTime(z, minZ, maxZ, dz));
+                    double zExit = Math.min(yExit, exitTime(z, minZ, maxZ, dz));
+                    if(zEnter < zExit && !visitor.visitCell(x, y, z, zEnter))
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The time at which the interval [min, max] moving at speed d starts to overlap [cell, cell + 1].
+     */
+    private static double enterTime(int cell, double min, double max, double d)
+    {
+        if(d > 0.0)
+        {
+            return (cell - max) / d;
+        }
+        if(d < 0.0)
+        {
+            return (cell + 1 - min) / d;
+        }
+        return min < cell + 1 && max > cell ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return The time at which the interval [min, max] moving at speed d stops overlapping [cell, cell + 1].
+     */
+    private static double exitTime(int cell, double min, double max, double d)
+    {
+        if(d > 0.0)
+        {
+            return (cell + 1 - min) / d;
+        }
+        if(d < 0.0)
+        {
+            return (cell - max) / d;
+        }
+        return min < cell + 1 && max > cell ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+    }
+}
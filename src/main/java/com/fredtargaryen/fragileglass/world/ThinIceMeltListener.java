@@ -0,0 +1,38 @@
+package com.fredtargaryen.fragileglass.world;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import net.minecraft.block.Block;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Used instead of random ticks to melt thin ice when FragileGlassBase#eventDrivenMelt is on. Thin ice only melts when
+ * the block light where it is goes up, and the world tells its listeners every time it sets the light of a block, so
+ * thin ice is only checked when that happens to it. The check is done by a scheduled BlockThinIce#updateTick, because
+ * blocks can't be changed while the light is being worked out.
+ * The FragileIndex is checked first, so light changes away from fragile blocks cost one lookup.
+ */
+public class ThinIceMeltListener extends WorldEventAdapter
+{
+    private final World world;
+    private final FragileIndex fragileIndex;
+
+    public ThinIceMeltListener(World world, FragileIndex fragileIndex)
+    {
+        this.world = world;
+        this.fragileIndex = fragileIndex;
+    }
+
+    @Override
+    public void notifyLightSet(BlockPos pos)
+    {
+        if(this.fragileIndex.contains(pos.getX(), pos.getY(), pos.getZ()))
+        {
+            Block block = this.world.getBlockState(pos).getBlock();
+            if(block == FragileGlassBase.thinIce)
+            {
+                this.world.scheduleUpdate(pos, block, block.tickRate(this.world));
+            }
+        }
+    }
+}
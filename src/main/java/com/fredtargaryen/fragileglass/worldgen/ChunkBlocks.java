@@ -0,0 +1,76 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
+
+/**
+ * The blocks of one chunk, as PatchGen sees them while deciding where patches go. Either a live chunk in the world
+ * (LiveChunkBlocks), used during normal generation, or a copy of one (ChunkSnapshot), which can be read and changed
+ * off the server thread; see PatchRetrofit.
+ * All coordinates are block coordinates in the world, and must be inside the chunk unless stated otherwise. As an
+ * IBlockAccess, everything outside the chunk is air.
+ */
+public abstract class ChunkBlocks implements IBlockAccess
+{
+    protected final int chunkX;
+    protected final int chunkZ;
+
+    protected ChunkBlocks(int chunkX, int chunkZ)
+    {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    public int getChunkX()
+    {
+        return this.chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return this.chunkZ;
+    }
+
+    /**
+     * @return true if the block coordinates are inside this chunk. Any y counts.
+     */
+    public boolean covers(int x, int z)
+    {
+        return x >> 4 == this.chunkX && z >> 4 == this.chunkZ;
+    }
+
+    /**
+     * @param y From 0 to 255.
+     */
+    public abstract IBlockState getBlockState(int x, int y, int z);
+
+    /**
+     * As Chunk#setBlockState, but the change doesn't have to happen straight away; see the implementations.
+     * @param y From 0 to 255.
+     */
+    public abstract void setBlockState(int x, int y, int z, IBlockState state);
+
+    /**
+     * As Chunk#getHeightValue: the y coordinate just above the highest block in the column which blocks light.
+     */
+    public abstract int getHeightValue(int x, int z);
+
+    /**
+     * @param sectionY From 0 to 15.
+     * @return true if the 16x16x16 section is all air.
+     */
+    public abstract boolean isSectionEmpty(int sectionY);
+
+    @Override
+    public IBlockState getBlockState(BlockPos pos)
+    {
+        int y = pos.getY();
+        if(y < 0 || y > 255 || !this.covers(pos.getX(), pos.getZ()))
+        {
+            return Blocks.AIR.getDefaultState();
+        }
+        return this.getBlockState(pos.getX(), y, pos.getZ());
+    }
+}
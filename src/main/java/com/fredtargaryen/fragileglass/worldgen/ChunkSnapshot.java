@@ -0,0 +1,185 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A copy of a chunk's blocks, taken on the server thread, which PatchGen can then read and change on any other
+ * thread. Changes only affect the copy; they are remembered, and apply sets them in the world later, on the server
+ * thread, a few at a time if need be.
+ */
+public class ChunkSnapshot extends ChunkBlocks
+{
+    private final WorldType worldType;
+    //One array per section, indexed by y << 8 | z << 4 | x. null for empty sections
+    private final IBlockState[][] sections = new IBlockState[16][];
+    private final int[] heightMap;
+    private final byte[] biomes;
+    //Packed position -> new state, in the order they were changed
+    private final Long2ObjectLinkedOpenHashMap<IBlockState> changes = new Long2ObjectLinkedOpenHashMap<>();
+    //Packed position -> the state in the world when the copy was taken, for each changed block
+    private final Long2ObjectOpenHashMap<IBlockState> originalStates = new Long2ObjectOpenHashMap<>();
+    private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+    /**
+     * Must be called on the server thread.
+     */
+    public ChunkSnapshot(World world, Chunk chunk)
+    {
+        super(chunk.x, chunk.z);
+        this.worldType = world.getWorldType();
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        for(int sectionY = 0; sectionY < 16; ++sectionY)
+        {
+            ExtendedBlockStorage section = storage[sectionY];
+            if(section != Chunk.NULL_BLOCK_STORAGE && !section.isEmpty())
+            {
+                IBlockState[] states = new IBlockState[4096];
+                for(int i = 0; i < 4096; ++i)
+                {
+                    states[i] = section.get(i & 15, i >> 8, i >> 4 & 15);
+                }
+                this.sections[sectionY] = states;
+            }
+        }
+        this.heightMap = chunk.getHeightMap().clone();
+        this.biomes = chunk.getBiomeArray().clone();
+    }
+
+    @Override
+    public IBlockState getBlockState(int x, int y, int z)
+    {
+        IBlockState[] section = this.sections[y >> 4];
+        return section == null ? Blocks.AIR.getDefaultState() : section[(y & 15) << 8 | (z & 15) << 4 | (x & 15)];
+    }
+
+    @Override
+    public void setBlockState(int x, int y, int z, IBlockState state)
+    {
+        IBlockState[] section = this.sections[y >> 4];
+        if(section == null)
+        {
+            section = new IBlockState[4096];
+            Arrays.fill(section, Blocks.AIR.getDefaultState());
+            this.sections[y >> 4] = section;
+        }
+        int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        long packedPos = this.pos.setPos(x, y, z).toLong();
+        if(!this.originalStates.containsKey(packedPos))
+        {
+            this.originalStates.put(packedPos, section[index]);
+        }
+        section[index] = state;
+        this.changes.put(packedPos, state);
+    }
+
+    /**
+     * @return The number of changes apply hasn't got to yet.
+     */
+    public int getNoChanges()
+    {
+        return this.changes.size();
+    }
+
+    /**
+     * Set the changed blocks through the given LiveChunkBlocks, in the order they were changed, until maxWrites blocks
+     * have been set. Blocks which have been changed in the world since the copy was taken are left alone. Changes
+     * which have been dealt with are forgotten, so calling this again carries on where the last call stopped. Must be
+     * called on the server thread; call finish on the blocks afterwards.
+     * @return The number of blocks changed.
+     */
+    public int apply(LiveChunkBlocks blocks, int maxWrites)
+    {
+        int noChanged = 0;
+        while(noChanged < maxWrites && !this.changes.isEmpty())
+        {
+            long packedPos = this.changes.firstLongKey();
+            IBlockState newState = this.changes.removeFirst();
+            BlockPos pos = BlockPos.fromLong(packedPos);
+            if(blocks.getBlockState(pos.getX(), pos.getY(), pos.getZ()) == this.originalStates.get(packedPos))
+            {
+                blocks.setBlockState(pos.getX(), pos.getY(), pos.getZ(), newState);
+                ++noChanged;
+            }
+        }
+        return noChanged;
+    }
+
+    @Override
+    public int getHeightValue(int x, int z)
+    {
+        return this.heightMap[(z & 15) << 4 | (x & 15)];
+    }
+
+    @Override
+    public boolean isSectionEmpty(int sectionY)
+    {
+        return this.sections[sectionY] == null;
+    }
+
+    @Nullable
+    @Override
+    public TileEntity getTileEntity(BlockPos pos)
+    {
+        return null;
+    }
+
+    @Override
+    public int getCombinedLight(BlockPos pos, int lightValue)
+    {
+        return 15 << 20 | lightValue << 4;
+    }
+
+    @Override
+    public boolean isAirBlock(BlockPos pos)
+    {
+        IBlockState state = this.getBlockState(pos);
+        return state.getBlock().isAir(state, this, pos);
+    }
+
+    @Override
+    public Biome getBiome(BlockPos pos)
+    {
+        if(!this.covers(pos.getX(), pos.getZ()))
+        {
+            return Biomes.PLAINS;
+        }
+        return Biome.getBiome(this.biomes[(pos.getZ() & 15) << 4 | (pos.getX() & 15)] & 255, Biomes.PLAINS);
+    }
+
+    @Override
+    public int getStrongPower(BlockPos pos, EnumFacing direction)
+    {
+        return 0;
+    }
+
+    @Override
+    public WorldType getWorldType()
+    {
+        return this.worldType;
+    }
+
+    @Override
+    public boolean isSideSolid(BlockPos pos, EnumFacing side, boolean _default)
+    {
+        if(pos.getY() < 0 || pos.getY() > 255 || !this.covers(pos.getX(), pos.getZ()))
+        {
+            return _default;
+        }
+        return this.getBlockState(pos).isSideSolid(this, pos, side);
+    }
+}
@@ -0,0 +1,74 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * The top surface of every column in one chunk: the block World#getTopSolidOrLiquidBlock(pos).down() would find,
+ * i.e. the highest block which stops movement and isn't leaves or foliage.
+ * World#getTopSolidOrLiquidBlock walks down from the top of the chunk's highest section and looks the chunk up again
+ * for every call. This is worked out once per chunk instead, walking down from the chunk's height map, which already
+ * sits just above the highest block that lets no light through. Blocks higher up which stop movement but let all
+ * light through (glass, fences) are ignored, but generation only cares about the ice and stone below them anyway.
+ */
+public class ChunkSurface
+{
+    private final int chunkBlockX;
+    private final int chunkBlockZ;
+    //Indexed by z << 4 | x, with x and z relative to the chunk. -1 if the column has no surface
+    private final int[] surfaceY = new int[256];
+    private final IBlockState[] surfaceStates = new IBlockState[256];
+
+    public ChunkSurface(ChunkBlocks blocks)
+    {
+        this.chunkBlockX = blocks.getChunkX() * 16;
+        this.chunkBlockZ = blocks.getChunkZ() * 16;
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for(int z = 0; z < 16; ++z)
+        {
+            for(int x = 0; x < 16; ++x)
+            {
+                IBlockState state = Blocks.AIR.getDefaultState();
+                int y = Math.min(blocks.getHeightValue(this.chunkBlockX + x, this.chunkBlockZ + z), 256) - 1;
+                for(; y >= 0; --y)
+                {
+                    pos.setPos(this.chunkBlockX + x, y, this.chunkBlockZ + z);
+                    state = blocks.getBlockState(pos.getX(), y, pos.getZ());
+                    if(state.getMaterial().blocksMovement() && !state.getBlock().isLeaves(state, blocks, pos) && !state.getBlock().isFoliage(blocks, pos))
+                    {
+                        break;
+                    }
+                }
+                this.surfaceY[z << 4 | x] = y;
+                this.surfaceStates[z << 4 | x] = y < 0 ? Blocks.AIR.getDefaultState() : state;
+            }
+        }
+    }
+
+    /**
+     * @return true if the block coordinates are inside this chunk.
+     */
+    public boolean covers(int x, int z)
+    {
+        return x >= this.chunkBlockX && x < this.chunkBlockX + 16 && z >= this.chunkBlockZ && z < this.chunkBlockZ + 16;
+    }
+
+    /**
+     * @param x Block coordinates; must be inside this chunk.
+     * @return The y coordinate of the surface block in that column, or -1 if there isn't one.
+     */
+    public int getSurfaceY(int x, int z)
+    {
+        return this.surfaceY[(z & 15) << 4 | (x & 15)];
+    }
+
+    /**
+     * @param x Block coordinates; must be inside this chunk.
+     * @return The surface block in that column, or air if there isn't one.
+     */
+    public IBlockState getSurfaceState(int x, int z)
+    {
+        return this.surfaceStates[(z & 15) << 4 | (x & 15)];
+    }
+}
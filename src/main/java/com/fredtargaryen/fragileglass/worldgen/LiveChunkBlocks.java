@@ -0,0 +1,211 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
+import com.fredtargaryen.fragileglass.world.BreakSystem;
+import com.fredtargaryen.fragileglass.world.FragileIndex;
+import com.fredtargaryen.fragileglass.world.PaneConnectionCache;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A loaded chunk, read and written straight through its ExtendedBlockStorage instead of going through the world for
+ * every block. Used while the chunk is being populated, and by PatchRetrofit to apply a ChunkSnapshot.
+ * Blocks with a TileEntity of their own are still set through the world. Call finish when done, to create the new
+ * blocks' TileEntities, add new fragile blocks to the FragileIndex, update the light once for the whole chunk and send
+ * the changed sections to any players who can see the chunk.
+ */
+public class LiveChunkBlocks extends ChunkBlocks
+{
+    private final World world;
+    private final Chunk chunk;
+    private final ExtendedBlockStorage[] sections;
+    private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+    //Packed positions of blocks written to storage which need a TileEntity creating or are in FragileBlockRegistry
+    private long[] newBlocks = new long[64];
+    private int noNewBlocks;
+    private boolean opacityChanged;
+    //One bit per section written to storage
+    private int changedSections;
+    //Packed positions of all blocks written to storage, so panes next to them can be told in finish
+    private long[] writtenBlocks = new long[64];
+    private int noWrittenBlocks;
+
+    public LiveChunkBlocks(World world, int chunkX, int chunkZ)
+    {
+        this(world, world.getChunkFromChunkCoords(chunkX, chunkZ));
+    }
+
+    public LiveChunkBlocks(World world, Chunk chunk)
+    {
+        super(chunk.x, chunk.z);
+        this.world = world;
+        this.chunk = chunk;
+        this.sections = chunk.getBlockStorageArray();
+    }
+
+    @Override
+    public IBlockState getBlockState(int x, int y, int z)
+    {
+        ExtendedBlockStorage section = this.sections[y >> 4];
+        return section == Chunk.NULL_BLOCK_STORAGE ? Blocks.AIR.getDefaultState() : section.get(x & 15, y & 15, z & 15);
+    }
+
+    @Override
+    public void setBlockState(int x, int y, int z, IBlockState state)
+    {
+        ExtendedBlockStorage section = this.sections[y >> 4];
+        this.pos.setPos(x, y, z);
+        IBlockState oldState = section == Chunk.NULL_BLOCK_STORAGE ? Blocks.AIR.getDefaultState() : section.get(x & 15, y & 15, z & 15);
+        if(section == Chunk.NULL_BLOCK_STORAGE || oldState.getBlock().hasTileEntity(oldState))
+        {
+            //Flag 18: flag 2 sends the change to clients and flag 16 stops observers (which may be in an unloaded
+            //chunk) from seeing the change
+            this.world.setBlockState(this.pos, state, 18);
+            return;
+        }
+        section.set(x & 15, y & 15, z & 15, state);
+        this.changedSections |= 1 << (y >> 4);
+        if(this.noWrittenBlocks == this.writtenBlocks.length)
+        {
+            this.writtenBlocks = Arrays.copyOf(this.writtenBlocks, this.noWrittenBlocks * 2);
+        }
+        this.writtenBlocks[this.noWrittenBlocks++] = this.pos.toLong();
+        this.opacityChanged |= oldState.getLightOpacity(this.world, this.pos) != state.getLightOpacity(this.world, this.pos);
+        if(state.getBlock().hasTileEntity(state) || FragileBlockRegistry.get(state) != null)
+        {
+            if(this.noNewBlocks == this.newBlocks.length)
+            {
+                this.newBlocks = Arrays.copyOf(this.newBlocks, this.noNewBlocks * 2);
+            }
+            this.newBlocks[this.noNewBlocks++] = this.pos.toLong();
+        }
+    }
+
+    /**
+     * Create the TileEntities of the blocks written so far, index the fragile ones, make panes next to them work out
+     * their connections again, bring the chunk's height and skylight maps up to date, and send the changed sections to
+     * any players who can see the chunk. Writes to storage skip PaneConnectionListener, so panes are told here.
+     */
+    public void finish()
+    {
+        if(this.changedSections != 0)
+        {
+            if(this.opacityChanged)
+            {
+                //Light isn't worked out properly until the chunk has been populated, so this is enough then. After
+                //that, the world checks the chunk's light again a bit at a time, instead of once for every block
+                this.chunk.generateSkylightMap();
+                if(this.chunk.isLightPopulated())
+                {
+                    this.chunk.resetRelightChecks();
+                }
+            }
+            this.chunk.markDirty();
+            for(int i = 0; i < this.noNewBlocks; ++i)
+            {
+                BlockPos newPos = BlockPos.fromLong(this.newBlocks[i]);
+                IBlockState state = this.getBlockState(newPos.getX(), newPos.getY(), newPos.getZ());
+                if(state.getBlock().hasTileEntity(state))
+                {
+                    this.chunk.getTileEntity(newPos, Chunk.EnumCreateEntityType.IMMEDIATE);
+                }
+                if(FragileBlockRegistry.get(state) != null)
+                {
+                    FragileIndex.addInWorld(this.world, newPos);
+                }
+            }
+            BreakSystem breakSystem = this.world.isRemote ? null : FragileGlassBase.getBreakSystem(this.world);
+            if(breakSystem != null)
+            {
+                PaneConnectionCache paneConnections = breakSystem.getPaneConnections();
+                for(int i = 0; i < this.noWrittenBlocks; ++i)
+                {
+                    paneConnections.invalidateAround(BlockPos.fromLong(this.writtenBlocks[i]));
+                }
+            }
+            if(this.world instanceof WorldServer)
+            {
+                PlayerChunkMapEntry entry = ((WorldServer) this.world).getPlayerChunkMap().getEntry(this.chunkX, this.chunkZ);
+                if(entry != null && entry.isSentToPlayers())
+                {
+                    entry.sendPacket(new SPacketChunkData(this.chunk, this.changedSections));
+                }
+            }
+            this.noNewBlocks = 0;
+            this.noWrittenBlocks = 0;
+            this.opacityChanged = false;
+            this.changedSections = 0;
+        }
+    }
+
+    @Override
+    public int getHeightValue(int x, int z)
+    {
+        return this.chunk.getHeightValue(x & 15, z & 15);
+    }
+
+    @Override
+    public boolean isSectionEmpty(int sectionY)
+    {
+        ExtendedBlockStorage section = this.sections[sectionY];
+        return section == Chunk.NULL_BLOCK_STORAGE || section.isEmpty();
+    }
+
+    @Nullable
+    @Override
+    public TileEntity getTileEntity(BlockPos pos)
+    {
+        return this.world.getTileEntity(pos);
+    }
+
+    @Override
+    public int getCombinedLight(BlockPos pos, int lightValue)
+    {
+        return this.world.getCombinedLight(pos, lightValue);
+    }
+
+    @Override
+    public boolean isAirBlock(BlockPos pos)
+    {
+        return this.world.isAirBlock(pos);
+    }
+
+    @Override
+    public Biome getBiome(BlockPos pos)
+    {
+        return this.world.getBiome(pos);
+    }
+
+    @Override
+    public int getStrongPower(BlockPos pos, EnumFacing direction)
+    {
+        return this.world.getStrongPower(pos, direction);
+    }
+
+    @Override
+    public WorldType getWorldType()
+    {
+        return this.world.getWorldType();
+    }
+
+    @Override
+    public boolean isSideSolid(BlockPos pos, EnumFacing side, boolean _default)
+    {
+        return this.world.isSideSolid(pos, side, _default);
+    }
+}
@@ -1,36 +1,69 @@
 package com.fredtargaryen.fragileglass.worldgen;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.IChunkProvider;
 import net.minecraft.world.gen.IChunkGenerator;
 import net.minecraftforge.fml.common.IWorldGenerator;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Random;
 
 public abstract class PatchGen implements IWorldGenerator
 {
-    //If it goes a long time without genning a patch, forces a bonus patch to gen
-    protected int timeSinceLastPatch;
-    protected final int timeToWaitBeforeBonusPatch;
+    //Chunks are grouped into square regions this many chunks across, and each region has one bonus chunk
+    private final int regionSize;
     private int genChance;
     protected int avePatchSize;
     private Block blockToSet;
-    private static final double piFraction = Math.PI / 6;
-    private static final double twoPi = Math.PI * 2;
+    //Patches can't be wider than a chunk, so there is no need for bigger discs than this
+    private static final int MAX_DISC_RADIUS = 16;
+    /**
+     * For each radius, every cell in a disc of that radius except the centre, as packed offsets from the centre; see
+     * packOffset. Cells are in rings, outermost first, so patches grow inwards as they did with the trig loop.
+     */
+    private static final int[][] DISC_OFFSETS = new int[MAX_DISC_RADIUS + 1][];
+
+    static
+    {
+        for(int radius = 0; radius <= MAX_DISC_RADIUS; ++radius)
+        {
+            int[] offsets = new int[(2 * radius + 1) * (2 * radius + 1)];
+            int noOffsets = 0;
+            for(int ring = radius; ring > 0; --ring)
+            {
+                for(int dx = -radius; dx <= radius; ++dx)
+                {
+                    for(int dz = -radius; dz <= radius; ++dz)
+                    {
+                        if((int) Math.round(Math.sqrt(dx * dx + dz * dz)) == ring)
+                        {
+                            offsets[noOffsets++] = packOffset(dx, dz, ring > radius - 2);
+                        }
+                    }
+                }
+            }
+            DISC_OFFSETS[radius] = Arrays.copyOf(offsets, noOffsets);
+        }
+    }
+
+    private static int packOffset(int dx, int dz, boolean outer)
+    {
+        return (dx + 128) | (dz + 128) << 8 | (outer ? 1 << 16 : 0);
+    }
 
     public PatchGen (int genChance, int avePatchSize, Block blockToSet) {
         this.genChance = genChance;
         this.avePatchSize = avePatchSize;
         this.blockToSet =  blockToSet;
-        this.timeSinceLastPatch = 0;
-        this.timeToWaitBeforeBonusPatch = genChance + 1;
+        this.regionSize = (int) Math.ceil(Math.sqrt(genChance + 1));
     }
 
     /**
-     * Finds suitable places in the chunk to call attemptPatch.
+     * Generates patches in a chunk which is being populated, if it is suitable.
      *
      * @param random the chunk specific {@link Random}.
      * @param chunkX the chunk X coordinate of this chunk.
@@ -41,73 +74,117 @@ public abstract class PatchGen implements IWorldGenerator
      *
      */
     @Override
-    public abstract void generate(Random random, int chunkX, int chunkZ, World world, IChunkGenerator chunkGenerator, IChunkProvider chunkProvider);
-
-    protected boolean attemptPatch(Random random, int chunkX, int chunkZ, BlockPos patchCentre, World world)
+    public void generate(Random random, int chunkX, int chunkZ, World world, IChunkGenerator chunkGenerator, IChunkProvider chunkProvider)
     {
-        if(random.nextInt(this.genChance) == 0 && this.genPatch(random, chunkX, chunkZ, patchCentre, world))
-        {
-            this.timeSinceLastPatch = 0;
-            return true;
-        }
-        else if(this.timeSinceLastPatch >= this.timeToWaitBeforeBonusPatch && this.genPatch(random, chunkX, chunkZ, patchCentre, world))
-        {
-            this.timeSinceLastPatch = 0;
-            return true;
-        }
-        else
+        if(this.isChunkSuitable(world, chunkX, chunkZ))
         {
-            this.timeSinceLastPatch++;
-            return false;
+            LiveChunkBlocks blocks = new LiveChunkBlocks(world, chunkX, chunkZ);
+            this.generatePatches(random, blocks, world.getSeed());
+            blocks.finish();
         }
+        //Suitable or not, this chunk has had its chance of this kind of patch
+        PatchedChunks.mark(world, world.getChunkFromChunkCoords(chunkX, chunkZ), this.getMarkerBit());
     }
 
     /**
-     * Uses flag 18 to set BlockStates, because flag 2 sends the change to clients and flag 16 prevents observers
-     * (which may be in an unloaded chunk) from seeing the change.
-     * @param random Random object to use
-     * @param chunkX Position of chunk. Multiplied by 16 to get corner block position
-     * @param chunkZ As above
-     * @param patchCentre The block in the middle of the patch - the only block to definitely have been placed if
-     * @param world The world object
-     * @return true; can't remember why
+     * @return This kind of patch's bit in PatchedChunks.
+     */
+    public abstract int getMarkerBit();
+
+    /**
+     * Checks anything about the chunk which can't be told from its blocks alone, such as its biome. Called on the
+     * server thread.
      */
-    protected boolean genPatch(Random random, int chunkX, int chunkZ, BlockPos patchCentre, World world)
+    public abstract boolean isChunkSuitable(World world, int chunkX, int chunkZ);
+
+    /**
+     * Finds suitable places in the chunk to call attemptPatch. Only uses the given blocks, random and seed, so it can
+     * be called on any thread; see PatchRetrofit.
+     * @param random the chunk specific {@link Random}.
+     * @param seed The world seed.
+     */
+    public abstract void generatePatches(Random random, ChunkBlocks blocks, long seed);
+
+    /**
+     * @param bonus If true, generate the patch even if the random chance says no; see isBonusChunk.
+     * @param surface If not null, the surface of the chunk; see genPatchDirect.
+     */
+    protected boolean attemptPatch(Random random, ChunkBlocks blocks, BlockPos patchCentre, boolean bonus, @Nullable ChunkSurface surface)
+    {
+        return (random.nextInt(this.genChance) == 0 || bonus) && this.genPatchDirect(random, blocks, patchCentre, surface);
+    }
+
+    /**
+     * Makes sure patches don't get too rare: in each region of chunks, one chunk gets a bonus patch at the first
+     * suitable place, even if the random chance says no. A region has at least genChance + 1 chunks, so on average
+     * there is a bonus patch at least that often.
+     * The bonus chunk only depends on the world seed and the region's coordinates, so generation gives the same result
+     * whatever order chunks are generated in, and chunks can be generated on several threads at once.
+     */
+    protected boolean isBonusChunk(long seed, int chunkX, int chunkZ)
+    {
+        int regionX = Math.floorDiv(chunkX, this.regionSize);
+        int regionZ = Math.floorDiv(chunkZ, this.regionSize);
+        //Each kind of patch picks different bonus chunks
+        long hash = mix(seed ^ this.getClass().getName().hashCode() ^ mix(regionX * 0x9E3779B97F4A7C15L + regionZ));
+        int bonusIndex = (int) Math.floorMod(hash, (long) (this.regionSize * this.regionSize));
+        return (chunkX - regionX * this.regionSize) + (chunkZ - regionZ * this.regionSize) * this.regionSize == bonusIndex;
+    }
+
+    /**
+     * The SplitMix64 finaliser; spreads similar inputs out into very different outputs.
+     */
+    private static long mix(long x)
+    {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Generates a roughly circular patch around patchCentre:
+     * - blocks are read and written through the ChunkBlocks instead of going through the world for every block;
+     * - the disc is filled from a table of offsets, so every cell in it is visited exactly once and there are no gaps.
+     * Only blocks inside the chunk are changed; the centre is moved so that is all of them unless the patch is wider
+     * than the chunk. If a ChunkSurface is given, columns whose surface is below the patch are skipped: the patch is
+     * on the surface, so there can't be anything valid to transform in them.
+     * @return true
+     */
+    protected boolean genPatchDirect(Random random, ChunkBlocks blocks, BlockPos patchCentre, @Nullable ChunkSurface surface)
     {
-        BlockPos.MutableBlockPos nextBlockPos = new BlockPos.MutableBlockPos(0, 0, 0);
-        Block nextBlock;
         int patchRadius = (int) (((2 * random.nextGaussian()) + this.avePatchSize) / 2);
         //Move centre of patch so that patches cannot go outside the chunk
-        int chunkBlockX = chunkX * 16;
-        int chunkBlockZ = chunkZ * 16;
-        double centreX = Math.max(patchCentre.getX(), chunkBlockX + patchRadius);
-        centreX = Math.min(centreX, chunkBlockX + 16 - patchRadius);
-        double centreY = patchCentre.getY();
-        double centreZ = Math.max(patchCentre.getZ(), chunkBlockZ + patchRadius);
-        centreZ = Math.min(centreZ, chunkBlockZ + 16 - patchRadius);
-        patchCentre = new BlockPos(centreX, centreY, centreZ);
-        for (int rad = patchRadius; rad > 0; rad--)
+        int chunkBlockX = blocks.getChunkX() * 16;
+        int chunkBlockZ = blocks.getChunkZ() * 16;
+        int centreX = Math.min(Math.max(patchCentre.getX(), chunkBlockX + patchRadius), chunkBlockX + 16 - patchRadius);
+        int centreY = patchCentre.getY();
+        int centreZ = Math.min(Math.max(patchCentre.getZ(), chunkBlockZ + patchRadius), chunkBlockZ + 16 - patchRadius);
+        if(centreY < 0 || centreY > 255)
+        {
+            return true;
+        }
+        IBlockState newState = this.blockToSet.getDefaultState();
+        if(patchRadius > 0 && !blocks.isSectionEmpty(centreY >> 4))
         {
-            for (double r = 0; r < twoPi; r += piFraction)
+            for(int offset : DISC_OFFSETS[Math.min(patchRadius, MAX_DISC_RADIUS)])
             {
-                int nextX = (int) (centreX + (rad * Math.cos(r)));
-                int nextZ = (int) (centreZ + (rad * Math.sin(r)));
-                nextBlockPos.setPos(nextX, centreY, nextZ);
-                nextBlock = world.getBlockState(nextBlockPos).getBlock();
-                if(this.isBlockValidToTransform(nextBlock))
+                int nextX = centreX + (offset & 0xFF) - 128;
+                int nextZ = centreZ + (offset >> 8 & 0xFF) - 128;
+                if(!blocks.covers(nextX, nextZ) || (surface != null && surface.getSurfaceY(nextX, nextZ) < centreY))
                 {
-                    //Adds a little randomness to the outside of patches, to avoid perfect circles all the time
-                    if (rad > patchRadius - 2) {
-                        if (random.nextBoolean()) {
-                            world.setBlockState(nextBlockPos, this.blockToSet.getDefaultState(), 18);
-                        }
-                    } else {
-                        world.setBlockState(nextBlockPos, this.blockToSet.getDefaultState(), 18);
-                    }
+                    continue;
+                }
+                //Adds a little randomness to the outside of patches, to avoid perfect circles all the time
+                if(this.isBlockValidToTransform(blocks.getBlockState(nextX, centreY, nextZ).getBlock()) && ((offset & 1 << 16) == 0 || random.nextBoolean()))
+                {
+                    blocks.setBlockState(nextX, centreY, nextZ, newState);
                 }
             }
         }
-        world.setBlockState(patchCentre, this.blockToSet.getDefaultState(), 18);
+        if(blocks.covers(centreX, centreZ))
+        {
+            blocks.setBlockState(centreX, centreY, centreZ, newState);
+        }
         return true;
     }
 
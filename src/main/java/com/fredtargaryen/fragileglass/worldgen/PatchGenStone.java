@@ -2,11 +2,10 @@ package com.fredtargaryen.fragileglass.worldgen;
 
 import com.fredtargaryen.fragileglass.FragileGlassBase;
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.chunk.IChunkProvider;
-import net.minecraft.world.gen.IChunkGenerator;
 
 import java.util.Random;
 
@@ -17,47 +16,53 @@ public class PatchGenStone extends PatchGen
         super(FragileGlassBase.genChanceStone, FragileGlassBase.avePatchSizeStone, FragileGlassBase.weakStone);
     }
 
+    @Override
+    public int getMarkerBit()
+    {
+        return PatchedChunks.STONE;
+    }
+
+    @Override
+    public boolean isChunkSuitable(World world, int chunkX, int chunkZ)
+    {
+        return true;
+    }
+
     /**
-     * Finds suitable places in the chunk to call attemptPatch.
-     *
-     * @param random the chunk specific {@link Random}.
-     * @param chunkX the chunk X coordinate of this chunk.
-     * @param chunkZ the chunk Z coordinate of this chunk.
-     * @param world : additionalData[0] The minecraft {@link World} we're generating for.
-     * @param chunkGenerator : additionalData[1] The {@link IChunkProvider} that is generating.
-     * @param chunkProvider : additionalData[2] {@link IChunkProvider} that is requesting the world generation.
-     *
+     * Looks for stone cave ceilings in a few random columns of the chunk.
      */
-    public void generate(Random random, int chunkX, int chunkZ, World world, IChunkGenerator chunkGenerator, IChunkProvider chunkProvider) {
-        int y = 0;
+    @Override
+    public void generatePatches(Random random, ChunkBlocks blocks, long seed) {
         //Coords of "top left" blocks in chunk
-        int chunkBlockX = chunkX * 16;
-        int chunkBlockZ = chunkZ * 16;
-        //Possible middle block in patch
-        Block candidate;
-        boolean previousBlockSolid = true;
-        //The BlockPos where patch generation will be attempted
-        BlockPos patchCentre = new BlockPos(chunkBlockX + random.nextInt(16), 0, chunkBlockZ + random.nextInt(16));
-        while(y < 256) {
-            if (world.getBlockState(patchCentre).isBlockNormalCube()) {
-                if (!previousBlockSolid) {
-                    previousBlockSolid = true;
-                    candidate = world.getBlockState(patchCentre).getBlock();
-                    if (this.isBlockValidToTransform(candidate)) {
-                        this.attemptPatch(random, chunkX, chunkZ, patchCentre, world);
-                        patchCentre = new BlockPos(chunkBlockX + random.nextInt(16), y, chunkBlockZ + random.nextInt(16));
-                    }
+        int chunkBlockX = blocks.getChunkX() * 16;
+        int chunkBlockZ = blocks.getChunkZ() * 16;
+        int columns = FragileGlassBase.columnsStone;
+        //Used up by the first patch generated in this chunk
+        boolean bonus = this.isBonusChunk(seed, blocks.getChunkX(), blocks.getChunkZ());
+        //Each column gets every columns-th section, so between them they cover the height of the world once
+        for (int column = 0; column < columns; ++column) {
+            int x = chunkBlockX + random.nextInt(16);
+            int z = chunkBlockZ + random.nextInt(16);
+            //Nothing above the height map blocks light, so nothing there is a normal cube
+            int top = blocks.getHeightValue(x, z);
+            for (int sectionY = column; sectionY < 16 && sectionY << 4 < top; sectionY += columns) {
+                if (blocks.isSectionEmpty(sectionY)) {
+                    continue;
                 }
-            }
-            else
-            {
-                if (previousBlockSolid)
-                {
-                    previousBlockSolid = false;
+                //Whether the block below the section is solid. The bottom of the world counts as solid
+                boolean previousBlockSolid = sectionY == 0 || blocks.getBlockState(x, (sectionY << 4) - 1, z).isBlockNormalCube();
+                for (int y = sectionY << 4; y < (sectionY + 1) << 4; ++y) {
+                    IBlockState state = blocks.getBlockState(x, y, z);
+                    boolean solid = state.isBlockNormalCube();
+                    //A solid block with air (or anything else not solid) below it: the ceiling of a cave
+                    if (solid && !previousBlockSolid && this.isBlockValidToTransform(state.getBlock())) {
+                        if (this.attemptPatch(random, blocks, new BlockPos(x, y, z), bonus, null)) {
+                            bonus = false;
+                        }
+                    }
+                    previousBlockSolid = solid;
                 }
             }
-            patchCentre = patchCentre.up();
-            ++y;
         }
     }
 
@@ -0,0 +1,348 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import com.fredtargaryen.fragileglass.FragileGlassBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Adds thin ice and weak stone patches to chunks which were generated without them, e.g. by a world pre-generator
+ * before the mod was installed. Started by /fragileglass retrofit; one can run in each dimension at a time.
+ * Every tick, on the server thread, a few chunks are copied into ChunkSnapshots. Deciding where the patches go in each
+ * copy is done on a ForkJoinPool, and the patches are then set in the world back on the server thread through a
+ * LiveChunkBlocks, in the same order the chunks were copied in. No more than FragileGlassBase#maxRetrofitWritesPerTick
+ * blocks are set per tick; a chunk with more changes than that left is finished over the next few ticks.
+ * Each chunk gets exactly the patches it would have got when it was populated, given the blocks it has now, except for
+ * kinds of patch it has already had; see PatchedChunks.
+ * How far the retrofit got is kept in RetrofitData, so it can be resumed after it is stopped or the server restarts.
+ */
+public class PatchRetrofit
+{
+    //Chunks copied per tick. Loading chunks from disk is the slow part, so this is what limits the speed
+    private static final int SNAPSHOTS_PER_TICK = 32;
+    //A rough upper bound on the blocks one chunk's patches set. Copies take a few hundred KB each, so only about as
+    //many chunks are copied ahead as can be applied in one tick's writes
+    private static final int WRITES_PER_CHUNK = 64;
+    //The most chunks copied ahead, however many writes are allowed per tick, so the copies can't fill the heap
+    private static final int MAX_IN_FLIGHT = 256;
+    //Ticks between progress messages
+    private static final int PROGRESS_INTERVAL = 200;
+
+    private static final HashMap<Integer, PatchRetrofit> running = new HashMap<>();
+
+    private final WorldServer world;
+    private final RetrofitData data;
+    private final List<PatchGen> patchGens;
+    private final ICommandSender sender;
+    private final ForkJoinPool pool;
+    //Most chunks looked at but not applied yet. They are kept loaded until they are applied
+    private final int maxInFlight;
+    //Chunks which have been looked at but not applied yet, in order. Only touched on the server thread
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private long nextToSnapshot;
+    private long blocksChanged;
+    private int ticksSinceProgress;
+
+    /**
+     * One chunk of the retrofit.
+     */
+    private static class Job
+    {
+        private final int chunkX;
+        private final int chunkZ;
+        //True if the chunk wasn't loaded before the retrofit looked at it, so it should be unloaded again afterwards
+        private final boolean loadedHere;
+        //PatchedChunks bits to set once the patches are applied; 0 if the chunk hasn't been populated
+        private final int markerBits;
+        //Works out the chunk's patches; null if the chunk doesn't need any
+        @Nullable
+        private final ForkJoinTask<ChunkSnapshot> plan;
+
+        private Job(int chunkX, int chunkZ, boolean loadedHere, int markerBits, @Nullable ForkJoinTask<ChunkSnapshot> plan)
+        {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.loadedHere = loadedHere;
+            this.markerBits = markerBits;
+            this.plan = plan;
+        }
+    }
+
+    private PatchRetrofit(WorldServer world, RetrofitData data, List<PatchGen> patchGens, ICommandSender sender)
+    {
+        this.world = world;
+        this.data = data;
+        this.patchGens = patchGens;
+        this.sender = sender;
+        this.nextToSnapshot = data.getNextIndex();
+        this.maxInFlight = Math.max(SNAPSHOTS_PER_TICK, Math.min(MAX_IN_FLIGHT, FragileGlassBase.maxRetrofitWritesPerTick / WRITES_PER_CHUNK));
+        //Leave one core for the server thread
+        this.pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Fragile Glass retrofit " + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Start the retrofit saved in the world's RetrofitData, from the first chunk which hasn't been applied yet.
+     * @return false if a retrofit is already running in the world.
+     */
+    public static boolean start(WorldServer world, List<PatchGen> patchGens, ICommandSender sender)
+    {
+        int dimension = world.provider.getDimension();
+        if(running.containsKey(dimension))
+        {
+            return false;
+        }
+        PatchRetrofit retrofit = new PatchRetrofit(world, RetrofitData.get(world), patchGens, sender);
+        running.put(dimension, retrofit);
+        MinecraftForge.EVENT_BUS.register(retrofit);
+        return true;
+    }
+
+    /**
+     * @return The retrofit running in the given dimension, or null if there isn't one.
+     */
+    @Nullable
+    public static PatchRetrofit get(int dimension)
+    {
+        return running.get(dimension);
+    }
+
+    /**
+     * Stop the retrofit. Chunks which have been copied but not applied are forgotten, and will be done again if the
+     * retrofit is resumed.
+     */
+    public void stop()
+    {
+        running.remove(this.world.provider.getDimension());
+        MinecraftForge.EVENT_BUS.unregister(this);
+        this.pool.shutdownNow();
+        ChunkProviderServer provider = this.world.getChunkProvider();
+        for(Job job : this.jobs)
+        {
+            this.unloadIfUnused(provider, job);
+        }
+        this.jobs.clear();
+    }
+
+    public long getChunksDone()
+    {
+        return this.data.getNextIndex();
+    }
+
+    public long getNoChunks()
+    {
+        return this.data.getNoChunks();
+    }
+
+    public long getBlocksChanged()
+    {
+        return this.blocksChanged;
+    }
+
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event)
+    {
+        if(event.phase == TickEvent.Phase.END && event.world == this.world)
+        {
+            this.snapshotChunks();
+            this.applyPatches();
+            int dimension = this.world.provider.getDimension();
+            if(!this.data.isUnfinished())
+            {
+                this.stop();
+                this.sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.finished",
+                        dimension, this.getNoChunks(), this.blocksChanged));
+            }
+            else if(++this.ticksSinceProgress >= PROGRESS_INTERVAL)
+            {
+                this.ticksSinceProgress = 0;
+                this.sender.sendMessage(new TextComponentTranslation("commands.fragileglass.retrofit.progress",
+                        dimension, this.getChunksDone(), this.getNoChunks(), this.blocksChanged));
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event)
+    {
+        //The RetrofitData is already up to date, so the retrofit can be resumed next time
+        if(event.getWorld() == this.world)
+        {
+            this.stop();
+        }
+    }
+
+    /**
+     * Copy the next few chunks and hand them to the pool.
+     */
+    private void snapshotChunks()
+    {
+        ChunkProviderServer provider = this.world.getChunkProvider();
+        for(int i = 0; i < SNAPSHOTS_PER_TICK && this.nextToSnapshot < this.data.getNoChunks() && this.jobs.size() < this.maxInFlight; ++i)
+        {
+            this.jobs.add(this.snapshot(provider, this.data.getChunkX(this.nextToSnapshot), this.data.getChunkZ(this.nextToSnapshot)));
+            ++this.nextToSnapshot;
+        }
+    }
+
+    /**
+     * Copy a chunk and hand it to the pool, loading it if need be. Chunks which haven't been generated are skipped, and
+     * so are chunks which haven't been populated, because population will add their patches anyway. Each PatchGen also
+     * skips chunks which PatchedChunks says have had its patches.
+     */
+    private Job snapshot(ChunkProviderServer provider, int chunkX, int chunkZ)
+    {
+        if(!provider.isChunkGeneratedAt(chunkX, chunkZ))
+        {
+            return new Job(chunkX, chunkZ, false, 0, null);
+        }
+        //A chunk which is queued to unload is only kept loaded by the retrofit from here on
+        Chunk loaded = getLoadedChunk(provider, chunkX, chunkZ);
+        boolean loadedHere = loaded == null || loaded.unloadQueued;
+        Chunk chunk = provider.provideChunk(chunkX, chunkZ);
+        ForkJoinTask<ChunkSnapshot> plan = null;
+        int markerBits = 0;
+        if(chunk.isTerrainPopulated())
+        {
+            int patched = PatchedChunks.get(this.world, chunk);
+            //Biomes and so on can only be checked here, on the server thread
+            boolean[] suitable = new boolean[this.patchGens.size()];
+            boolean anySuitable = false;
+            for(int g = 0; g < suitable.length; ++g)
+            {
+                PatchGen patchGen = this.patchGens.get(g);
+                markerBits |= patchGen.getMarkerBit();
+                suitable[g] = (patched & patchGen.getMarkerBit()) == 0 && patchGen.isChunkSuitable(this.world, chunkX, chunkZ);
+                anySuitable |= suitable[g];
+            }
+            if(anySuitable)
+            {
+                ChunkSnapshot snapshot = new ChunkSnapshot(this.world, chunk);
+                long seed = this.world.getSeed();
+                plan = this.pool.submit(() -> this.planPatches(snapshot, suitable, seed));
+            }
+        }
+        return new Job(chunkX, chunkZ, loadedHere, markerBits, plan);
+    }
+
+    /**
+     * Runs on the pool. Calls each suitable PatchGen with the same Random FML would have given it when the chunk was
+     * populated; see GameRegistry#generateWorld.
+     */
+    private ChunkSnapshot planPatches(ChunkSnapshot snapshot, boolean[] suitable, long seed)
+    {
+        Random random = new Random(seed);
+        long xSeed = random.nextLong() >> 2 + 1L;
+        long zSeed = random.nextLong() >> 2 + 1L;
+        long chunkSeed = (xSeed * snapshot.getChunkX() + zSeed * snapshot.getChunkZ()) ^ seed;
+        for(int g = 0; g < suitable.length; ++g)
+        {
+            if(suitable[g])
+            {
+                random.setSeed(chunkSeed);
+                this.patchGens.get(g).generatePatches(random, snapshot, seed);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Apply the patches of the oldest chunks which have been planned, in order, until the next chunk isn't ready or
+     * maxRetrofitWritesPerTick blocks have been set this tick. A chunk which was unloaded after it was copied is copied
+     * again, because it may have changed since.
+     */
+    private void applyPatches()
+    {
+        ChunkProviderServer provider = this.world.getChunkProvider();
+        int writesLeft = FragileGlassBase.maxRetrofitWritesPerTick;
+        while(!this.jobs.isEmpty() && writesLeft > 0)
+        {
+            Job job = this.jobs.peekFirst();
+            Chunk chunk = getLoadedChunk(provider, job.chunkX, job.chunkZ);
+            boolean applied = true;
+            if(job.plan != null)
+            {
+                if(!job.plan.isDone())
+                {
+                    break;
+                }
+                if(chunk == null)
+                {
+                    this.jobs.removeFirst();
+                    this.jobs.addFirst(this.snapshot(provider, job.chunkX, job.chunkZ));
+                    break;
+                }
+                try
+                {
+                    ChunkSnapshot snapshot = job.plan.join();
+                    LiveChunkBlocks blocks = new LiveChunkBlocks(this.world, chunk);
+                    int changed = snapshot.apply(blocks, writesLeft);
+                    blocks.finish();
+                    writesLeft -= changed;
+                    this.blocksChanged += changed;
+                    if(snapshot.getNoChanges() > 0)
+                    {
+                        //Out of writes for this tick; finish the chunk next tick
+                        break;
+                    }
+                }
+                catch(RuntimeException e)
+                {
+                    FMLLog.log.error("Could not retrofit patches onto chunk {}, {}", job.chunkX, job.chunkZ, e);
+                    applied = false;
+                }
+            }
+            if(applied && job.markerBits != 0 && chunk != null)
+            {
+                PatchedChunks.mark(this.world, chunk, job.markerBits);
+            }
+            this.jobs.removeFirst();
+            this.unloadIfUnused(provider, job);
+            this.data.setNextIndex(this.data.getNextIndex() + 1);
+        }
+    }
+
+    /**
+     * As ChunkProviderServer#getLoadedChunk, but doesn't stop the chunk unloading if it is queued to.
+     */
+    @Nullable
+    private static Chunk getLoadedChunk(ChunkProviderServer provider, int chunkX, int chunkZ)
+    {
+        return provider.id2ChunkMap.get(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Let the chunk unload again if the retrofit loaded it and no player can see it.
+     */
+    private void unloadIfUnused(ChunkProviderServer provider, Job job)
+    {
+        if(job.loadedHere && !this.world.getPlayerChunkMap().contains(job.chunkX, job.chunkZ))
+        {
+            Chunk chunk = provider.getLoadedChunk(job.chunkX, job.chunkZ);
+            if(chunk != null)
+            {
+                provider.queueUnload(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import com.fredtargaryen.fragileglass.DataReference;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import java.util.HashMap;
+
+/**
+ * Remembers which kinds of patch each chunk has already had, from population or from PatchRetrofit, so a retrofit
+ * never gives a chunk the same kind of patch twice. Each PatchGen has its own bit; see PatchGen#getMarkerBit.
+ * The bits are saved in the chunk's NBT, and kept in a map per world while the chunk is loaded. Chunks populated
+ * before the bits were saved have none, so a retrofit over them can still add a second lot of patches.
+ * Register this class on the event bus.
+ */
+public class PatchedChunks
+{
+    public static final int ICE = 1;
+    public static final int STONE = 2;
+
+    private static final String TAG = DataReference.MODID + "_patched";
+
+    //Dimension -> packed chunk position -> marker bits, for loaded chunks with at least one bit set
+    private static final HashMap<Integer, Long2ByteOpenHashMap> worlds = new HashMap<>();
+
+    /**
+     * @return The marker bits of a loaded chunk.
+     */
+    public static int get(World world, Chunk chunk)
+    {
+        Long2ByteOpenHashMap chunks = worlds.get(world.provider.getDimension());
+        return chunks == null ? 0 : chunks.get(ChunkPos.asLong(chunk.x, chunk.z));
+    }
+
+    /**
+     * Set marker bits on a loaded chunk. Must be called on the server thread.
+     */
+    public static void mark(World world, Chunk chunk, int bits)
+    {
+        Long2ByteOpenHashMap chunks = worlds.computeIfAbsent(world.provider.getDimension(), dimension -> new Long2ByteOpenHashMap());
+        long key = ChunkPos.asLong(chunk.x, chunk.z);
+        byte oldBits = chunks.get(key);
+        if((oldBits | bits) != oldBits)
+        {
+            chunks.put(key, (byte) (oldBits | bits));
+            chunk.markDirty();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onChunkDataLoad(ChunkDataEvent.Load event)
+    {
+        World world = event.getWorld();
+        byte bits = event.getData().getByte(TAG);
+        if(!world.isRemote && bits != 0)
+        {
+            Chunk chunk = event.getChunk();
+            worlds.computeIfAbsent(world.provider.getDimension(), dimension -> new Long2ByteOpenHashMap())
+                    .put(ChunkPos.asLong(chunk.x, chunk.z), bits);
+        }
+    }
+
+    /**
+     * Chunks are saved after ChunkEvent.Unload, so this is where unloaded chunks are forgotten.
+     */
+    @SubscribeEvent
+    public static void onChunkDataSave(ChunkDataEvent.Save event)
+    {
+        Long2ByteOpenHashMap chunks = worlds.get(event.getWorld().provider.getDimension());
+        if(chunks != null)
+        {
+            Chunk chunk = event.getChunk();
+            long key = ChunkPos.asLong(chunk.x, chunk.z);
+            byte bits = chunk.isLoaded() ? chunks.get(key) : chunks.remove(key);
+            if(bits != 0)
+            {
+                event.getData().setByte(TAG, bits);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event)
+    {
+        if(!event.getWorld().isRemote)
+        {
+            worlds.remove(event.getWorld().provider.getDimension());
+        }
+    }
+}
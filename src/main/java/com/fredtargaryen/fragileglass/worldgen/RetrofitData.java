@@ -0,0 +1,113 @@
+package com.fredtargaryen.fragileglass.worldgen;
+
+import com.fredtargaryen.fragileglass.DataReference;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Saved with each dimension: the area of the last retrofit started there, and how far through it PatchRetrofit got,
+ * so that /fragileglass retrofit resume can carry on after a restart.
+ * Chunks are numbered row by row from the minimum corner; nextIndex is the first chunk whose patches haven't been
+ * applied yet.
+ */
+public class RetrofitData extends WorldSavedData
+{
+    private static final String NAME = DataReference.MODID + "_retrofit";
+
+    private int minChunkX;
+    private int minChunkZ;
+    //Until a retrofit is started the area is empty, so there is nothing to resume
+    private int maxChunkX = -1;
+    private int maxChunkZ = -1;
+    private long nextIndex;
+
+    public RetrofitData(String name)
+    {
+        super(name);
+    }
+
+    public static RetrofitData get(World world)
+    {
+        RetrofitData data = (RetrofitData) world.getPerWorldStorage().getOrLoadData(RetrofitData.class, NAME);
+        if(data == null)
+        {
+            data = new RetrofitData(NAME);
+            world.getPerWorldStorage().setData(NAME, data);
+        }
+        return data;
+    }
+
+    /**
+     * Forget any unfinished retrofit and start a new one covering the given chunks, inclusive.
+     */
+    public void start(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+    {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.maxChunkX = maxChunkX;
+        this.maxChunkZ = maxChunkZ;
+        this.nextIndex = 0;
+        this.markDirty();
+    }
+
+    public int getWidth()
+    {
+        return this.maxChunkX - this.minChunkX + 1;
+    }
+
+    public long getNoChunks()
+    {
+        return (long) this.getWidth() * (this.maxChunkZ - this.minChunkZ + 1);
+    }
+
+    public int getChunkX(long index)
+    {
+        return this.minChunkX + (int) (index % this.getWidth());
+    }
+
+    public int getChunkZ(long index)
+    {
+        return this.minChunkZ + (int) (index / this.getWidth());
+    }
+
+    public long getNextIndex()
+    {
+        return this.nextIndex;
+    }
+
+    public void setNextIndex(long nextIndex)
+    {
+        this.nextIndex = nextIndex;
+        this.markDirty();
+    }
+
+    /**
+     * @return true if a retrofit was started here and hasn't reached the last chunk.
+     */
+    public boolean isUnfinished()
+    {
+        return this.nextIndex < this.getNoChunks();
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound nbt)
+    {
+        this.minChunkX = nbt.getInteger("minChunkX");
+        this.minChunkZ = nbt.getInteger("minChunkZ");
+        this.maxChunkX = nbt.getInteger("maxChunkX");
+        this.maxChunkZ = nbt.getInteger("maxChunkZ");
+        this.nextIndex = nbt.getLong("nextIndex");
+    }
+
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound compound)
+    {
+        compound.setInteger("minChunkX", this.minChunkX);
+        compound.setInteger("minChunkZ", this.minChunkZ);
+        compound.setInteger("maxChunkX", this.maxChunkX);
+        compound.setInteger("maxChunkZ", this.maxChunkZ);
+        compound.setLong("nextIndex", this.nextIndex);
+        return compound;
+    }
+}
@@ -0,0 +1,89 @@
+package com.fredtargaryen.fragileglass.world;
+
+import com.fredtargaryen.fragileglass.block.BlockFragileGlass;
+import com.fredtargaryen.fragileglass.tileentity.capability.FragileBlockRegistry;
+import com.fredtargaryen.fragileglass.tileentity.capability.StatelessFragility;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityTNTPrimed;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Checks that BreakSystem's scan of a moving entity allocates nothing, however many cells it passes through, except
+ * for the copy of the position each crash gets. Counts the bytes allocated by this thread around many calls to
+ * breakBlocksInWay, after enough calls to get them compiled. The glass is registered with a strategy which only counts
+ * crashes, so the scan calls onCrash but never breaks anything.
+ */
+public class BreakSystemAllocationTest
+{
+    private static final int SIZE = 64;
+    private static final int WARMUP_CALLS = 50000;
+    private static final int MEASURED_CALLS = 100000;
+    //A BlockPos is an object header and three ints; rounded up for JVMs without compressed class pointers
+    private static final int BLOCK_POS_BYTES = 32;
+
+    private long crashes;
+
+    @BeforeClass
+    public static void bootstrap()
+    {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void breakBlocksInWayAllocatesNothing()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Random random = new Random(42L);
+        InMemoryBlockAccess blocks = new InMemoryBlockAccess(SIZE);
+        BreakSystem breakSystem = new BreakSystem();
+        breakSystem.setBlockAccess(blocks);
+        Block glass = new BlockFragileGlass();
+        FragileBlockRegistry.register(glass, new StatelessFragility()
+        {
+            @Override
+            public void onCrash(IBlockState state, World world, BlockPos pos, Entity crasher, double speed)
+            {
+                ++BreakSystemAllocationTest.this.crashes;
+            }
+        });
+        for(int i = 0; i < SIZE * SIZE * SIZE / 10; ++i)
+        {
+            BlockPos pos = new BlockPos(random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE));
+            blocks.setBlockState(pos, glass.getDefaultState(), null);
+            breakSystem.getFragileIndex().add(pos);
+        }
+        Entity e = new EntityTNTPrimed((World) null);
+        e.setPosition(SIZE / 2, SIZE / 2, SIZE / 2);
+
+        for(int i = 0; i < WARMUP_CALLS; ++i)
+        {
+            breakSystem.breakBlocksInWay(e, 1.5, -0.7, 2.3, 2.8, (byte) 3);
+        }
+        long threadId = Thread.currentThread().getId();
+        this.crashes = 0;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < MEASURED_CALLS; ++i)
+        {
+            breakSystem.breakBlocksInWay(e, 1.5, -0.7, 2.3, 2.8, (byte) 3);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertTrue("The entity never crashed into any glass", this.crashes > 0);
+        //Allow for a few one-off allocations by the JVM itself, but not one per call
+        Assert.assertTrue("breakBlocksInWay allocated " + allocated + " bytes over " + MEASURED_CALLS + " calls and "
+                + this.crashes + " crashes", allocated < MEASURED_CALLS + this.crashes * BLOCK_POS_BYTES);
+    }
+}
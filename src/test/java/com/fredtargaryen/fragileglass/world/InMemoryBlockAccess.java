@@ -0,0 +1,107 @@
+package com.fredtargaryen.fragileglass.world;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Stands in for a World in tests and benchmarks: a cube of blocks from (0, 0, 0) to (size - 1, size - 1, size - 1), held in
+ * arrays. Everything outside the cube is air.
+ */
+public class InMemoryBlockAccess implements IBlockAccess
+{
+    private final int size;
+    private final IBlockState[] states;
+    private final TileEntity[] tileEntities;
+
+    public InMemoryBlockAccess(int size)
+    {
+        this.size = size;
+        this.states = new IBlockState[size * size * size];
+        Arrays.fill(this.states, Blocks.AIR.getDefaultState());
+        this.tileEntities = new TileEntity[size * size * size];
+    }
+
+    private int index(BlockPos pos)
+    {
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        if(x < 0 || y < 0 || z < 0 || x >= this.size || y >= this.size || z >= this.size)
+        {
+            return -1;
+        }
+        return (x * this.size + y) * this.size + z;
+    }
+
+    public void setBlockState(BlockPos pos, IBlockState state, @Nullable TileEntity te)
+    {
+        int index = this.index(pos);
+        this.states[index] = state;
+        this.tileEntities[index] = te;
+        if(te != null)
+        {
+            te.setPos(pos);
+        }
+    }
+
+    @Nullable
+    @Override
+    public TileEntity getTileEntity(BlockPos pos)
+    {
+        int index = this.index(pos);
+        return index < 0 ? null : this.tileEntities[index];
+    }
+
+    @Override
+    public int getCombinedLight(BlockPos pos, int lightValue)
+    {
+        return 15 << 20 | lightValue << 4;
+    }
+
+    @Override
+    public IBlockState getBlockState(BlockPos pos)
+    {
+        int index = this.index(pos);
+        return index < 0 ? Blocks.AIR.getDefaultState() : this.states[index];
+    }
+
+    @Override
+    public boolean isAirBlock(BlockPos pos)
+    {
+        return this.getBlockState(pos).getBlock() == Blocks.AIR;
+    }
+
+    @Override
+    public Biome getBiome(BlockPos pos)
+    {
+        return Biomes.PLAINS;
+    }
+
+    @Override
+    public int getStrongPower(BlockPos pos, EnumFacing direction)
+    {
+        return 0;
+    }
+
+    @Override
+    public WorldType getWorldType()
+    {
+        return WorldType.DEFAULT;
+    }
+
+    @Override
+    public boolean isSideSolid(BlockPos pos, EnumFacing side, boolean _default)
+    {
+        return this.getBlockState(pos).isSideSolid(this, pos, side);
+    }
+}